@@ -0,0 +1,48 @@
+package org.protu.contentservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.protu.contentservice.common.config.RedisConfig;
+import org.protu.contentservice.common.response.ApiResponse;
+import org.protu.contentservice.common.response.ApiResponseBuilder;
+import org.protu.contentservice.course.CourseWithLessons;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Success envelope around a course payload: building it, and building plus writing it with the
+ * application object mapper as the message converter would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApiResponseBenchmark {
+
+  private CourseWithLessons payload;
+  private MockHttpServletRequest request;
+  private ObjectMapper objectMapper;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    payload = RedisSerializerBenchmark.courses(1, 10).getFirst();
+    request = new MockHttpServletRequest("GET", "/api/v1/courses/course-1");
+    objectMapper = new RedisConfig(null).objectMapper();
+  }
+
+  @Benchmark
+  public ResponseEntity<ApiResponse<CourseWithLessons>> build() {
+    return ApiResponseBuilder.buildSuccessApiResponse("Course has been retrieved", payload, HttpStatus.OK, "v1", request);
+  }
+
+  @Benchmark
+  public byte[] buildAndWrite() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(build().getBody());
+  }
+}
@@ -0,0 +1,32 @@
+package org.protu.contentservice.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+    Path result = Path.of(args.length > 1 ? args[1] : "target/jmh-result.json");
+    if (result.getParent() != null) {
+      Files.createDirectories(result.getParent());
+    }
+
+    Options options = new OptionsBuilder()
+        .include(include)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(result.toString())
+        .build();
+
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,99 @@
+package org.protu.contentservice.benchmark;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Fixed rows served through a {@link DataSource} that answers every query with them, so repository
+ * code can be benchmarked down to its result set handling without a database. Statements,
+ * parameters and connection lifecycle calls are accepted and ignored.
+ */
+final class InMemoryRows {
+
+  private final List<String> columns = new ArrayList<>();
+  private final List<Integer> types = new ArrayList<>();
+  private final List<Object[]> rows = new ArrayList<>();
+
+  InMemoryRows column(String name, int sqlType) {
+    columns.add(name);
+    types.add(sqlType);
+    return this;
+  }
+
+  InMemoryRows row(Object... values) {
+    rows.add(values);
+    return this;
+  }
+
+  int size() {
+    return rows.size();
+  }
+
+  ResultSet open() {
+    SimpleResultSet rs = new SimpleResultSet(new SimpleRowSource() {
+      private int next;
+
+      @Override
+      public Object[] readRow() {
+        return next < rows.size() ? rows.get(next++) : null;
+      }
+
+      @Override
+      public void close() {
+      }
+
+      @Override
+      public void reset() {
+        next = 0;
+      }
+    });
+    for (int i = 0; i < columns.size(); i++) {
+      rs.addColumn(columns.get(i), types.get(i), 0, 0);
+    }
+    return rs;
+  }
+
+  DataSource dataSource() {
+    PreparedStatement statement = stub(PreparedStatement.class,
+        method -> method.getName().equals("executeQuery") ? open() : null);
+    Connection connection = stub(Connection.class,
+        method -> Statement.class.isAssignableFrom(method.getReturnType()) ? statement : null);
+    return stub(DataSource.class,
+        method -> method.getReturnType() == Connection.class ? connection : null);
+  }
+
+  private static <T> T stub(Class<T> type, Function<Method, Object> answers) {
+    return type.cast(Proxy.newProxyInstance(InMemoryRows.class.getClassLoader(), new Class<?>[]{type},
+        (proxy, method, args) -> {
+          Object answer = answers.apply(method);
+          return answer != null ? answer : defaultValue(method.getReturnType());
+        }));
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    if (type == short.class || type == byte.class || type == float.class || type == double.class || type == char.class) {
+      throw new UnsupportedOperationException("Not stubbed for " + type);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,61 @@
+package org.protu.contentservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.protu.contentservice.course.CourseDto;
+import org.protu.contentservice.course.CourseRepository;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of course summary rows onto records over in-memory rows: {@code JdbcClient.query(Class)},
+ * which resolves columns to constructor parameters by name, against the positional
+ * {@link CourseRepository#SUMMARY_MAPPER}. The runner's GC profiler reports the allocation per
+ * call as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordMappingBenchmark {
+
+  private static final String COURSES_SQL = "SELECT id, name, description, pic_url, lesson_count FROM courses";
+
+  @Param({"1", "100"})
+  int rows;
+
+  private JdbcClient jdbcClient;
+
+  static InMemoryRows courseDtoRows(int courses) {
+    InMemoryRows rows = new InMemoryRows()
+        .column("id", Types.INTEGER)
+        .column("name", Types.VARCHAR)
+        .column("description", Types.VARCHAR)
+        .column("pic_url", Types.VARCHAR)
+        .column("lesson_count", Types.INTEGER);
+    for (int c = 1; c <= courses; c++) {
+      rows.row(c, "course-" + c, "Description of course " + c,
+          "https://res.cloudinary.com/protu/image/upload/course-" + c + ".png", 10);
+    }
+    return rows;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    jdbcClient = JdbcClient.create(courseDtoRows(rows).dataSource());
+  }
+
+  @Benchmark
+  public List<CourseDto> queryByClass() {
+    return jdbcClient.sql(COURSES_SQL).query(CourseDto.class).list();
+  }
+
+  @Benchmark
+  public List<CourseDto> queryByPosition() {
+    return jdbcClient.sql(COURSES_SQL).query(CourseRepository.SUMMARY_MAPPER).list();
+  }
+}
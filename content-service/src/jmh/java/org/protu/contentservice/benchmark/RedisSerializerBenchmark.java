@@ -0,0 +1,119 @@
+package org.protu.contentservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.protu.contentservice.common.cache.TypedSmileRedisSerializer;
+import org.protu.contentservice.common.config.RedisConfig;
+import org.protu.contentservice.course.CourseWithLessons;
+import org.protu.contentservice.lesson.dto.LessonWithoutContent;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the value serializers of {@link RedisConfig} on the all-courses-list payload: the
+ * default-typed JSON cache serializer, the per-cache typed Smile serializer and the JSON serializer
+ * of the shared RedisTemplate. The encode benchmarks report the encoded size as the secondary
+ * {@code encodedBytes} result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSerializerBenchmark {
+
+  @Param({"1", "50"})
+  int courses;
+
+  @Param({"10"})
+  int lessonsPerCourse;
+
+  private List<CourseWithLessons> payload;
+  private RedisSerializer<Object> json;
+  private RedisSerializer<Object> smile;
+  private RedisSerializer<Object> template;
+  private byte[] jsonBytes;
+  private byte[] smileBytes;
+  private byte[] templateBytes;
+
+  /**
+   * Size of the last encoded entry; assigned rather than accumulated, so the event counter reports
+   * bytes per entry, not per iteration.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class EncodedSize {
+    public long encodedBytes;
+  }
+
+  static List<CourseWithLessons> courses(int courses, int lessonsPerCourse) {
+    List<CourseWithLessons> result = new ArrayList<>(courses);
+    for (int c = 1; c <= courses; c++) {
+      List<LessonWithoutContent> lessons = new ArrayList<>(lessonsPerCourse);
+      for (int l = 1; l <= lessonsPerCourse; l++) {
+        lessons.add(new LessonWithoutContent(c * 1000 + l, "lesson-" + c + "-" + l, l));
+      }
+      result.add(new CourseWithLessons(c, "course-" + c, "Description of course " + c,
+          "https://res.cloudinary.com/protu/image/upload/course-" + c + ".png", lessons));
+    }
+    return result;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    RedisConfig config = new RedisConfig(null);
+    ObjectMapper smileMapper = config.redisSmileMapper();
+
+    payload = courses(courses, lessonsPerCourse);
+    json = new GenericJackson2JsonRedisSerializer(config.redisObjectMapper());
+    smile = new TypedSmileRedisSerializer(smileMapper,
+        smileMapper.getTypeFactory().constructCollectionType(List.class, CourseWithLessons.class), false);
+    template = new Jackson2JsonRedisSerializer<>(config.redisObjectMapper(), Object.class);
+
+    jsonBytes = json.serialize(payload);
+    smileBytes = smile.serialize(payload);
+    templateBytes = template.serialize(payload);
+  }
+
+  @Benchmark
+  public byte[] encodeJson(EncodedSize size) {
+    byte[] bytes = json.serialize(payload);
+    size.encodedBytes = bytes.length;
+    return bytes;
+  }
+
+  @Benchmark
+  public byte[] encodeSmile(EncodedSize size) {
+    byte[] bytes = smile.serialize(payload);
+    size.encodedBytes = bytes.length;
+    return bytes;
+  }
+
+  @Benchmark
+  public byte[] encodeTemplate(EncodedSize size) {
+    byte[] bytes = template.serialize(payload);
+    size.encodedBytes = bytes.length;
+    return bytes;
+  }
+
+  @Benchmark
+  public Object decodeJson() {
+    return json.deserialize(jsonBytes);
+  }
+
+  @Benchmark
+  public Object decodeSmile() {
+    return smile.deserialize(smileBytes);
+  }
+
+  @Benchmark
+  public Object decodeTemplate() {
+    return template.deserialize(templateBytes);
+  }
+}
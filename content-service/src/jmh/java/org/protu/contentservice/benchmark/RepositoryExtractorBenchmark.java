@@ -0,0 +1,116 @@
+package org.protu.contentservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.protu.contentservice.course.CourseRepository;
+import org.protu.contentservice.course.CourseWithLessons;
+import org.protu.contentservice.track.TrackRepository;
+import org.protu.contentservice.track.TrackWithCourses;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+import javax.sql.DataSource;
+import java.sql.Types;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grouping of joined parent/child rows into course and track aggregates, through the repositories'
+ * own JdbcClient calls over in-memory rows. {@code parents} courses or tracks each carry
+ * {@code children} lessons or courses; the findByName variants read a single parent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryExtractorBenchmark {
+
+  @Param({"1", "50"})
+  int parents;
+
+  @Param({"10"})
+  int children;
+
+  private CourseRepository allCourses;
+  private CourseRepository oneCourse;
+  private TrackRepository allTracks;
+  private TrackRepository oneTrack;
+
+  static InMemoryRows courseRows(int courses, int lessonsPerCourse) {
+    InMemoryRows rows = new InMemoryRows()
+        .column("course_id", Types.INTEGER)
+        .column("course_name", Types.VARCHAR)
+        .column("course_desc", Types.VARCHAR)
+        .column("course_pic", Types.VARCHAR)
+        .column("lesson_id", Types.INTEGER)
+        .column("lesson_name", Types.VARCHAR)
+        .column("lesson_order", Types.INTEGER);
+    for (int c = 1; c <= courses; c++) {
+      for (int l = 1; l <= lessonsPerCourse; l++) {
+        rows.row(c, "course-" + c, "Description of course " + c,
+            "https://res.cloudinary.com/protu/image/upload/course-" + c + ".png",
+            c * 1000 + l, "lesson-" + c + "-" + l, l);
+      }
+    }
+    return rows;
+  }
+
+  static InMemoryRows trackRows(int tracks, int coursesPerTrack) {
+    InMemoryRows rows = new InMemoryRows()
+        .column("track_id", Types.INTEGER)
+        .column("track_name", Types.VARCHAR)
+        .column("track_desc", Types.VARCHAR)
+        .column("course_id", Types.INTEGER)
+        .column("course_name", Types.VARCHAR)
+        .column("course_desc", Types.VARCHAR)
+        .column("course_pic", Types.VARCHAR)
+        .column("course_lesson_count", Types.INTEGER);
+    for (int t = 1; t <= tracks; t++) {
+      for (int c = 1; c <= coursesPerTrack; c++) {
+        rows.row(t, "track-" + t, "Description of track " + t,
+            t * 1000 + c, "course-" + t + "-" + c, "Description of course " + c,
+            "https://res.cloudinary.com/protu/image/upload/course-" + c + ".png", 10);
+      }
+    }
+    return rows;
+  }
+
+  private static CourseRepository courses(InMemoryRows rows) {
+    DataSource dataSource = rows.dataSource();
+    return new CourseRepository(JdbcClient.create(dataSource));
+  }
+
+  private static TrackRepository tracks(InMemoryRows rows) {
+    DataSource dataSource = rows.dataSource();
+    return new TrackRepository(JdbcClient.create(dataSource), null);
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    allCourses = courses(courseRows(parents, children));
+    oneCourse = courses(courseRows(1, children));
+    allTracks = tracks(trackRows(parents, children));
+    oneTrack = tracks(trackRows(1, children));
+  }
+
+  @Benchmark
+  public List<CourseWithLessons> courseFindAll() {
+    return allCourses.findAll();
+  }
+
+  @Benchmark
+  public Optional<CourseWithLessons> courseFindByName() {
+    return oneCourse.findByName("course-1");
+  }
+
+  @Benchmark
+  public Optional<List<TrackWithCourses>> trackFindAll() {
+    return allTracks.findAll();
+  }
+
+  @Benchmark
+  public Optional<TrackWithCourses> trackFindByName() {
+    return oneTrack.findByName("track-1");
+  }
+}
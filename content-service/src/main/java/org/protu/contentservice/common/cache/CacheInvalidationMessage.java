@@ -0,0 +1,8 @@
+package org.protu.contentservice.common.cache;
+
+public record CacheInvalidationMessage(String origin, String cacheName, String key) {
+
+  public boolean isClear() {
+    return key == null;
+  }
+}
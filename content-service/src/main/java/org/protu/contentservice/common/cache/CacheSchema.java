@@ -0,0 +1,14 @@
+package org.protu.contentservice.common.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+/**
+ * The value type stored in a cache and the version of its encoding. Bumping the version moves the
+ * cache to a fresh key namespace, so entries written with an older shape are never decoded.
+ */
+public record CacheSchema(JavaType valueType, int version) {
+
+  public String keyPrefix(String cacheName) {
+    return cacheName + "::v" + version + "::";
+  }
+}
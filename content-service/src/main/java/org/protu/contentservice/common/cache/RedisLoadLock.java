@@ -0,0 +1,60 @@
+package org.protu.contentservice.common.cache;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Short-lived Redis lock that lets one instance load a missing cache entry while the others wait for it.
+ */
+public class RedisLoadLock {
+
+  private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+      if redis.call('get', KEYS[1]) == ARGV[1] then
+        return redis.call('del', KEYS[1])
+      end
+      return 0
+      """, Long.class);
+
+  private final StringRedisTemplate redis;
+  private final Duration ttl;
+  private final Duration waitTimeout;
+  private final Duration pollInterval;
+
+  public RedisLoadLock(StringRedisTemplate redis, Duration ttl, Duration waitTimeout, Duration pollInterval) {
+    this.redis = redis;
+    this.ttl = ttl;
+    this.waitTimeout = waitTimeout;
+    this.pollInterval = pollInterval;
+  }
+
+  public Duration waitTimeout() {
+    return waitTimeout;
+  }
+
+  public Duration pollInterval() {
+    return pollInterval;
+  }
+
+  private static String lockKey(String cacheName, String key) {
+    return "load-lock::" + cacheName + "::" + key;
+  }
+
+  public String tryAcquire(String cacheName, String key) {
+    String token = UUID.randomUUID().toString();
+    Boolean acquired = redis.opsForValue().setIfAbsent(lockKey(cacheName, key), token, ttl);
+    return Boolean.TRUE.equals(acquired) ? token : null;
+  }
+
+  public boolean isHeld(String cacheName, String key) {
+    return Boolean.TRUE.equals(redis.hasKey(lockKey(cacheName, key)));
+  }
+
+  public void release(String cacheName, String key, String token) {
+    redis.execute(RELEASE_SCRIPT, List.of(lockKey(cacheName, key)), token);
+  }
+}
@@ -0,0 +1,12 @@
+package org.protu.contentservice.common.cache;
+
+public record StampedValue(Object value, long loadedAt) {
+
+  public static StampedValue now(Object value) {
+    return new StampedValue(value, System.currentTimeMillis());
+  }
+
+  public boolean isOlderThan(long ageMillis) {
+    return System.currentTimeMillis() - loadedAt >= ageMillis;
+  }
+}
@@ -0,0 +1,346 @@
+package org.protu.contentservice.common.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Cache} that keeps a bounded Caffeine copy of entries in front of a remote (Redis) cache.
+ * Evictions are applied to both tiers and broadcast so that peer instances drop their local copy.
+ * <p>
+ * When refresh-ahead is enabled, values are stored as {@link StampedValue}s; a lookup through
+ * {@link #get(Object, Callable)} that finds an entry older than the refresh threshold returns it
+ * immediately and reloads it in the background.
+ * <p>
+ * Loads are single-flight: concurrent callers for the same key share one in-process load, and
+ * instances coordinate through a {@link RedisLoadLock} so only one of them queries the database.
+ * <p>
+ * Evictions requested inside a transaction are applied after it commits, ahead of the entity version
+ * bumps, so a reader never pairs a new ETag with the old entry. A load that overlapped an eviction,
+ * local or received from a peer, still returns its value but does not cache it.
+ */
+public class TwoLevelCache implements Cache {
+
+  private static final Logger log = LoggerFactory.getLogger(TwoLevelCache.class);
+
+  private final String name;
+  private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+  private final Cache remote;
+  private final TwoLevelCacheManager manager;
+  private final long refreshAfterMillis;
+  private final Executor refreshExecutor;
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public TwoLevelCache(
+      String name,
+      com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+      Cache remote,
+      TwoLevelCacheManager manager) {
+
+    this(name, local, remote, manager, 0, null);
+  }
+
+  public TwoLevelCache(
+      String name,
+      com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+      Cache remote,
+      TwoLevelCacheManager manager,
+      long refreshAfterMillis,
+      Executor refreshExecutor) {
+
+    this.name = name;
+    this.local = local;
+    this.remote = remote;
+    this.manager = manager;
+    this.refreshAfterMillis = refreshAfterMillis;
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  static String localKey(Object key) {
+    return key instanceof String str ? str : key.toString();
+  }
+
+  private boolean isRefreshAhead() {
+    return refreshAfterMillis > 0 && refreshExecutor != null;
+  }
+
+  private Object wrap(Object value) {
+    return isRefreshAhead() ? StampedValue.now(value) : value;
+  }
+
+  private static Object unwrap(Object stored) {
+    return stored instanceof StampedValue stamped ? stamped.value() : stored;
+  }
+
+  private boolean isStale(Object stored) {
+    return stored instanceof StampedValue stamped && stamped.isOlderThan(refreshAfterMillis);
+  }
+
+  private Object lookupRemote(Object key) {
+    ValueWrapper wrapper = remote.get(key);
+    Object stored = wrapper != null ? wrapper.get() : null;
+    if (stored != null) {
+      local.put(localKey(key), stored);
+    }
+    return stored;
+  }
+
+  private Object lookup(Object key) {
+    Object stored = local.getIfPresent(localKey(key));
+    return stored != null ? stored : lookupRemote(key);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return remote.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    Object stored = lookup(key);
+    return stored != null ? new SimpleValueWrapper(unwrap(stored)) : null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper wrapper = get(key);
+    Object value = wrapper != null ? wrapper.get() : null;
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Object stored = lookup(key);
+
+    if (stored != null && isStale(stored)) {
+      // another instance may already have refreshed the shared tier
+      Object remoteStored = lookupRemote(key);
+      if (remoteStored != null) {
+        stored = remoteStored;
+      }
+      if (isStale(stored)) {
+        scheduleRefresh(key, valueLoader);
+      }
+    }
+
+    if (stored != null) {
+      return (T) unwrap(stored);
+    }
+    return load(key, valueLoader, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T load(Object key, Callable<T> valueLoader, boolean background) {
+    String localKey = localKey(key);
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> existing = inFlight.putIfAbsent(localKey, flight);
+    if (existing != null) {
+      manager.recordCoalescedLoad(name, "local");
+      Object value = awaitFlight(existing);
+      // a background refresh that deferred to another instance yields nothing to share
+      if (value != null || background) {
+        return (T) value;
+      }
+      return (T) loadAcrossInstances(key, localKey, valueLoader, false);
+    }
+
+    try {
+      Object value = loadAcrossInstances(key, localKey, valueLoader, background);
+      flight.complete(value);
+      return (T) value;
+    } catch (RuntimeException e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(localKey, flight);
+    }
+  }
+
+  private static Object awaitFlight(CompletableFuture<Object> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  private Object loadAcrossInstances(Object key, String localKey, Callable<?> valueLoader, boolean background) {
+    RedisLoadLock loadLock = manager.loadLock();
+    if (loadLock == null) {
+      return loadAndPut(key, valueLoader);
+    }
+
+    String token = loadLock.tryAcquire(name, localKey);
+    if (token != null) {
+      try {
+        return loadAndPut(key, valueLoader);
+      } finally {
+        loadLock.release(name, localKey, token);
+      }
+    }
+
+    manager.recordCoalescedLoad(name, "remote");
+    if (background) {
+      return null;
+    }
+
+    Object loaded = awaitRemoteLoad(key, localKey, loadLock);
+    return loaded != null ? loaded : loadAndPut(key, valueLoader);
+  }
+
+  private Object awaitRemoteLoad(Object key, String localKey, RedisLoadLock loadLock) {
+    long deadline = System.nanoTime() + loadLock.waitTimeout().toNanos();
+    while (System.nanoTime() < deadline) {
+      try {
+        Thread.sleep(loadLock.pollInterval());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+
+      Object stored = lookupRemote(key);
+      if (stored != null && !isStale(stored)) {
+        return unwrap(stored);
+      }
+      if (!loadLock.isHeld(name, localKey)) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private Object loadAndPut(Object key, Callable<?> valueLoader) {
+    long evictionsBefore = evictions.get();
+    Object value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    }
+
+    if (value == null) {
+      return null;
+    }
+    if (evictions.get() != evictionsBefore) {
+      log.debug("Not caching {} in cache {}, it was evicted while loading", localKey(key), name);
+      return value;
+    }
+    put(key, value);
+    return value;
+  }
+
+  private void scheduleRefresh(Object key, Callable<?> valueLoader) {
+    String localKey = localKey(key);
+    if (!refreshing.add(localKey)) {
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          load(key, valueLoader, true);
+        } catch (RuntimeException e) {
+          log.warn("Refresh-ahead of {} in cache {} failed, keeping the stale value", localKey, name, e);
+        } finally {
+          refreshing.remove(localKey);
+        }
+      });
+    } catch (TaskRejectedException e) {
+      refreshing.remove(localKey);
+      log.debug("Refresh-ahead of {} in cache {} rejected, executor is saturated", localKey, name);
+    }
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    if (value == null) {
+      remote.put(key, null);
+      local.invalidate(localKey(key));
+      return;
+    }
+
+    Object stored = wrap(value);
+    remote.put(key, stored);
+    local.put(localKey(key), stored);
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+      }
+
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
+  @Override
+  public void evict(Object key) {
+    afterCommit(() -> {
+      evictions.incrementAndGet();
+      remote.evict(key);
+      local.invalidate(localKey(key));
+      manager.evicted(name);
+      manager.publishEviction(name, localKey(key));
+    });
+  }
+
+  @Override
+  public void clear() {
+    afterCommit(() -> {
+      evictions.incrementAndGet();
+      remote.clear();
+      local.invalidateAll();
+      manager.evicted(name);
+      manager.publishEviction(name, null);
+    });
+  }
+
+  void evictLocal(String key) {
+    evictions.incrementAndGet();
+    local.invalidate(key);
+    manager.evicted(name);
+  }
+
+  void clearLocal() {
+    evictions.incrementAndGet();
+    local.invalidateAll();
+    manager.evicted(name);
+  }
+}
@@ -0,0 +1,134 @@
+package org.protu.contentservice.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+public class TwoLevelCacheManager implements CacheManager, MessageListener, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
+  private final CacheManager remote;
+  private final RedisTemplate<String, Object> redisTemplate;
+  private final AppProperties.Cache props;
+  private final ThreadPoolTaskExecutor refreshExecutor;
+  private final RedisLoadLock loadLock;
+  private final MeterRegistry meterRegistry;
+  private final String instanceId = UUID.randomUUID().toString();
+  private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+  private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+  public TwoLevelCacheManager(
+      CacheManager remote,
+      RedisTemplate<String, Object> redisTemplate,
+      AppProperties.Cache props,
+      ThreadPoolTaskExecutor refreshExecutor,
+      RedisLoadLock loadLock,
+      MeterRegistry meterRegistry) {
+
+    this.remote = remote;
+    this.redisTemplate = redisTemplate;
+    this.props = props;
+    this.refreshExecutor = refreshExecutor;
+    this.loadLock = loadLock;
+    this.meterRegistry = meterRegistry;
+  }
+
+  private com.github.benmanes.caffeine.cache.Cache<String, Object> buildLocalCache(Duration ttl) {
+    Duration localTtl = props.local().expireAfterWrite();
+    return Caffeine.newBuilder()
+        .maximumSize(props.local().maximumSize())
+        .expireAfterWrite(ttl.compareTo(localTtl) < 0 ? ttl : localTtl)
+        .build();
+  }
+
+  private TwoLevelCache createCache(String cacheName, Cache remoteCache) {
+    AppProperties.Cache.Spec spec = props.spec(cacheName);
+    long refreshAfterMillis = spec.refreshAhead()
+        ? (long) (spec.ttl().toMillis() * props.refreshAheadFraction())
+        : 0;
+
+    return new TwoLevelCache(cacheName, buildLocalCache(spec.ttl()), remoteCache, this, refreshAfterMillis, refreshExecutor);
+  }
+
+  @Override
+  public Cache getCache(String name) {
+    return caches.computeIfAbsent(name, cacheName -> {
+      Cache remoteCache = remote.getCache(cacheName);
+      return remoteCache == null ? null : createCache(cacheName, remoteCache);
+    });
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return Collections.unmodifiableSet(caches.keySet());
+  }
+
+  RedisLoadLock loadLock() {
+    return loadLock;
+  }
+
+  void recordCoalescedLoad(String cacheName, String scope) {
+    meterRegistry.counter("cache.loads.coalesced", "cache", cacheName, "scope", scope).increment();
+  }
+
+  /**
+   * Registers a listener told the cache name whenever entries are dropped here, by a local evict or
+   * clear or on request of a peer.
+   */
+  public void onEviction(Consumer<String> listener) {
+    evictionListeners.add(listener);
+  }
+
+  void evicted(String cacheName) {
+    evictionListeners.forEach(listener -> listener.accept(cacheName));
+  }
+
+  void publishEviction(String cacheName, String key) {
+    redisTemplate.convertAndSend(props.invalidationChannel(), new CacheInvalidationMessage(instanceId, cacheName, key));
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+    if (!(body instanceof CacheInvalidationMessage invalidation) || instanceId.equals(invalidation.origin())) {
+      return;
+    }
+
+    TwoLevelCache cache = caches.get(invalidation.cacheName());
+    if (cache == null) {
+      return;
+    }
+
+    log.debug("Dropping local entry {} of cache {} on request of {}", invalidation.key(), invalidation.cacheName(), invalidation.origin());
+    if (invalidation.isClear()) {
+      cache.clearLocal();
+    } else {
+      cache.evictLocal(invalidation.key());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    refreshExecutor.shutdown();
+  }
+}
@@ -0,0 +1,70 @@
+package org.protu.contentservice.common.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+
+/**
+ * Encodes the values of a single cache as Smile using the cache's declared type, so no per-value
+ * type metadata is written. Refresh-ahead caches store {@link StampedValue}s, which are encoded
+ * with the same declared type for the wrapped value.
+ */
+public class TypedSmileRedisSerializer implements RedisSerializer<Object> {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final ObjectWriter writer;
+  private final ObjectReader reader;
+  private final boolean stamped;
+
+  public TypedSmileRedisSerializer(ObjectMapper smileMapper, JavaType valueType, boolean stamped) {
+    JavaType payloadType = stamped
+        ? smileMapper.getTypeFactory().constructParametricType(Stamped.class, valueType)
+        : valueType;
+
+    this.writer = smileMapper.writerFor(payloadType);
+    this.reader = smileMapper.readerFor(payloadType);
+    this.stamped = stamped;
+  }
+
+  @Override
+  public byte[] serialize(Object value) throws SerializationException {
+    if (value == null) {
+      return EMPTY;
+    }
+
+    Object payload = value;
+    if (stamped) {
+      StampedValue stampedValue = value instanceof StampedValue sv ? sv : StampedValue.now(value);
+      payload = new Stamped<>(stampedValue.value(), stampedValue.loadedAt());
+    }
+
+    try {
+      return writer.writeValueAsBytes(payload);
+    } catch (IOException e) {
+      throw new SerializationException("Could not write Smile: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) throws SerializationException {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+
+    try {
+      Object payload = reader.readValue(bytes);
+      return payload instanceof Stamped<?> s ? new StampedValue(s.value(), s.loadedAt()) : payload;
+    } catch (IOException e) {
+      throw new SerializationException("Could not read Smile: " + e.getMessage(), e);
+    }
+  }
+
+  record Stamped<T>(T value, long loadedAt) {
+  }
+}
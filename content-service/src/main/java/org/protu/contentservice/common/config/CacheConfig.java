@@ -0,0 +1,147 @@
+package org.protu.contentservice.common.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.protu.contentservice.common.cache.CacheSchema;
+import org.protu.contentservice.common.cache.RedisLoadLock;
+import org.protu.contentservice.common.cache.TwoLevelCacheManager;
+import org.protu.contentservice.common.cache.TypedSmileRedisSerializer;
+import org.protu.contentservice.common.datasource.RecentWriters;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.protu.contentservice.course.CourseDto;
+import org.protu.contentservice.course.CourseWithLessons;
+import org.protu.contentservice.lesson.dto.CompressedLesson;
+import org.protu.contentservice.lesson.dto.LessonWithContent;
+import org.protu.contentservice.lesson.dto.LessonWithoutContent;
+import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
+import org.protu.contentservice.progress.ProgressDashboard;
+import org.protu.contentservice.track.TrackWithCourses;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Configuration
+public class CacheConfig {
+
+  // evicted on every completion; their readers are pinned per user by RecentWriters instead
+  private static final Set<String> USER_SCOPED_CACHES = Set.of("course-lessons-with-completion", "progress-dashboard");
+
+  private final AppProperties props;
+
+  public CacheConfig(AppProperties props) {
+    this.props = props;
+  }
+
+  private ThreadPoolTaskExecutor cacheRefreshExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(2);
+    executor.setMaxPoolSize(4);
+    executor.setQueueCapacity(100);
+    executor.setThreadNamePrefix("cache-refresh-");
+    executor.initialize();
+    return executor;
+  }
+
+  private static Map<String, CacheSchema> cacheSchemas(TypeFactory types) {
+    return Map.ofEntries(
+        Map.entry("all-courses-list", new CacheSchema(types.constructCollectionType(List.class, CourseWithLessons.class), 1)),
+        Map.entry("course-details", new CacheSchema(types.constructType(CourseWithLessons.class), 1)),
+        Map.entry("course-summary", new CacheSchema(types.constructType(CourseDto.class), 2)),
+        Map.entry("course-pages", new CacheSchema(types.constructParametricType(KeysetPage.class, CourseWithLessons.class), 1)),
+        Map.entry("course-lessons", new CacheSchema(types.constructCollectionType(List.class, LessonWithoutContent.class), 1)),
+        Map.entry("course-lessons-with-completion", new CacheSchema(types.constructCollectionType(List.class, LessonsWithCompletion.class), 1)),
+        Map.entry("all-tracks-list", new CacheSchema(types.constructCollectionType(List.class, TrackWithCourses.class), 2)),
+        Map.entry("track-details", new CacheSchema(types.constructType(TrackWithCourses.class), 2)),
+        Map.entry("track-pages", new CacheSchema(types.constructParametricType(KeysetPage.class, TrackWithCourses.class), 2)),
+        Map.entry("track-courses", new CacheSchema(types.constructCollectionType(List.class, CourseDto.class), 2)),
+        Map.entry("lesson-with-content", new CacheSchema(types.constructType(LessonWithContent.class), 1)),
+        Map.entry("lesson-without-content", new CacheSchema(types.constructType(LessonWithoutContent.class), 1)),
+        Map.entry("lesson-gzip", new CacheSchema(types.constructType(CompressedLesson.class), 1)),
+        Map.entry("progress-dashboard", new CacheSchema(types.constructType(ProgressDashboard.class), 1))
+    );
+  }
+
+  private RedisCacheConfiguration typedCacheConfiguration(
+      RedisCacheConfiguration defaults,
+      String cacheName,
+      CacheSchema schema,
+      ObjectMapper smileMapper) {
+
+    AppProperties.Cache.Spec spec = props.cache().spec(cacheName);
+    var serializer = new TypedSmileRedisSerializer(smileMapper, schema.valueType(), spec.refreshAhead());
+
+    return defaults
+        .entryTtl(spec.ttl())
+        .computePrefixWith(schema::keyPrefix)
+        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+  }
+
+  @Bean
+  public TwoLevelCacheManager cacheManager(
+      RedisConnectionFactory connectionFactory,
+      RedisCacheConfiguration cacheConfiguration,
+      RedisTemplate<String, Object> redisTemplate,
+      StringRedisTemplate stringRedisTemplate,
+      MeterRegistry meterRegistry,
+      @Qualifier("redisSmileMapper") ObjectMapper smileMapper,
+      ObjectProvider<RecentWriters> recentWriters) {
+
+    Map<String, RedisCacheConfiguration> perCacheConfigurations = new HashMap<>();
+    if (props.cache().specs() != null) {
+      props.cache().specs().forEach((cacheName, spec) ->
+          perCacheConfigurations.put(cacheName, cacheConfiguration.entryTtl(spec.ttl())));
+    }
+    cacheSchemas(smileMapper.getTypeFactory()).forEach((cacheName, schema) ->
+        perCacheConfigurations.put(cacheName, typedCacheConfiguration(cacheConfiguration, cacheName, schema, smileMapper)));
+
+    RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+        .cacheDefaults(cacheConfiguration)
+        .withInitialCacheConfigurations(perCacheConfigurations)
+        .build();
+    redisCacheManager.afterPropertiesSet();
+
+    AppProperties.Cache.LoadLock lockProps = props.cache().loadLock();
+    RedisLoadLock loadLock = new RedisLoadLock(
+        stringRedisTemplate, lockProps.ttl(), lockProps.waitTimeout(), lockProps.pollInterval());
+
+    TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+        redisCacheManager, redisTemplate, props.cache(), cacheRefreshExecutor(), loadLock, meterRegistry);
+    recentWriters.ifAvailable(writers -> cacheManager.onEviction(cacheName -> {
+      if (!USER_SCOPED_CACHES.contains(cacheName)) {
+        writers.catalogChanged();
+      }
+    }));
+    return cacheManager;
+  }
+
+  @Bean
+  public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+      RedisConnectionFactory connectionFactory,
+      TwoLevelCacheManager cacheManager,
+      EntityVersions entityVersions) {
+
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(cacheManager, new ChannelTopic(props.cache().invalidationChannel()));
+    container.addMessageListener(entityVersions, new ChannelTopic(props.cache().versionChannel()));
+    return container;
+  }
+}
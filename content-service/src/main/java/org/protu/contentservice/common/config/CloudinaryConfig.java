@@ -0,0 +1,23 @@
+package org.protu.contentservice.common.config;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+@Configuration
+public class CloudinaryConfig {
+
+  // one client for the application, so uploads share its pooled HTTP connections
+  @Bean
+  @Lazy
+  public Cloudinary cloudinary(AppProperties props) {
+    return new Cloudinary(ObjectUtils.asMap(
+        "cloud_name", props.cloudinary().cloudName(),
+        "api_key", props.cloudinary().apiKey(),
+        "api_secret", props.cloudinary().apiSecret(),
+        "secure", true));
+  }
+}
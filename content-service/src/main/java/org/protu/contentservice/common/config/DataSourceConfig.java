@@ -0,0 +1,94 @@
+package org.protu.contentservice.common.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.protu.contentservice.common.datasource.DbConcurrencyLimiter;
+import org.protu.contentservice.common.datasource.RecentWriters;
+import org.protu.contentservice.common.datasource.ReplicaRouter;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class DataSourceConfig {
+
+  private final AppProperties props;
+
+  public DataSourceConfig(AppProperties props) {
+    this.props = props;
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "app.db.limiter.enabled", havingValue = "true")
+  public DbConcurrencyLimiter dbConcurrencyLimiter() {
+    AppProperties.Db.Limiter limiter = props.db().limiter();
+    return new DbConcurrencyLimiter(limiter.permits(), limiter.maxWait());
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "app.db.replicas.enabled", havingValue = "true")
+  public RecentWriters recentWriters() {
+    return new RecentWriters(props.db().replicas().readYourWrites());
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "app.db.replicas.enabled", havingValue = "true")
+  public ReplicaRouter replicaRouter(DataSourceProperties primary, RecentWriters recentWriters) {
+    AppProperties.Db.Replicas config = props.db().replicas();
+    List<ReplicaRouter.Replica> replicas = new ArrayList<>();
+    for (int i = 0; i < config.endpoints().size(); i++) {
+      String name = "replica-" + i;
+      replicas.add(new ReplicaRouter.Replica(name, replicaPool(name, config.endpoints().get(i), primary, config)));
+    }
+    return new ReplicaRouter(replicas, recentWriters, config.maxLag(), config.healthCheckInterval());
+  }
+
+  private static HikariDataSource replicaPool(
+      String name,
+      AppProperties.Db.Replicas.Endpoint endpoint,
+      DataSourceProperties primary,
+      AppProperties.Db.Replicas config) {
+
+    HikariDataSource pool = new HikariDataSource();
+    pool.setPoolName(name);
+    pool.setJdbcUrl(endpoint.url());
+    pool.setUsername(endpoint.username() != null ? endpoint.username() : primary.determineUsername());
+    pool.setPassword(endpoint.password() != null ? endpoint.password() : primary.determinePassword());
+    pool.setMaximumPoolSize(config.poolSize());
+    pool.setConnectionTimeout(config.connectionTimeout().toMillis());
+    pool.setReadOnly(true);
+    // a replica that is down at startup is routed around, not fatal
+    pool.setInitializationFailTimeout(-1);
+    return pool;
+  }
+
+  // static and lazy on its collaborators, so post-processing the DataSource pulls in nothing early;
+  // the limiter bounds the primary pool only, replicas are bounded by their own pools
+  @Bean
+  static BeanPostProcessor dataSourceWrappers(
+      ObjectProvider<DbConcurrencyLimiter> limiter,
+      ObjectProvider<ReplicaRouter> replicaRouter) {
+
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+          return bean;
+        }
+        DbConcurrencyLimiter dbLimiter = limiter.getIfAvailable();
+        if (dbLimiter != null) {
+          dataSource = dbLimiter.limit(dataSource);
+        }
+        ReplicaRouter router = replicaRouter.getIfAvailable();
+        return router != null ? router.route(dataSource) : dataSource;
+      }
+    };
+  }
+}
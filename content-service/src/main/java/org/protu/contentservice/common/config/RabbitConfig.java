@@ -2,9 +2,11 @@ package org.protu.contentservice.common.config;
 
 import org.protu.contentservice.common.properties.AppProperties;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -43,6 +45,24 @@ public class RabbitConfig {
     return rabbitTemplate;
   }
 
+  @Bean
+  public SimpleRabbitListenerContainerFactory userEventsBatchContainerFactory(
+      SimpleRabbitListenerContainerFactoryConfigurer configurer,
+      ConnectionFactory connectionFactory) {
+
+    SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+    configurer.configure(factory, connectionFactory);
+
+    AppProperties.Rabbit.Batch batch = props.rabbit().batch();
+    factory.setBatchListener(true);
+    factory.setConsumerBatchEnabled(true);
+    factory.setBatchSize(batch.size());
+    factory.setPrefetchCount(Math.max(batch.prefetch(), batch.size()));
+    factory.setConcurrentConsumers(batch.concurrency());
+    factory.setReceiveTimeout(batch.receiveTimeout().toMillis());
+    return factory;
+  }
+
   @Bean
   public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
     return new Jackson2JsonMessageConverter();
@@ -4,9 +4,12 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.protu.contentservice.common.properties.AppProperties;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -19,11 +22,15 @@ import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
-import java.time.Duration;
-
 @Configuration
 public class RedisConfig {
 
+  private final AppProperties props;
+
+  public RedisConfig(AppProperties props) {
+    this.props = props;
+  }
+
   @Bean
   @Primary
   public ObjectMapper objectMapper() {
@@ -44,13 +51,25 @@ public class RedisConfig {
         );
   }
 
+  @Bean(name = "redisSmileMapper")
+  public ObjectMapper redisSmileMapper() {
+    SmileFactory smileFactory = SmileFactory.builder()
+        .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+        .build();
+
+    return new ObjectMapper(smileFactory)
+        .registerModule(new JavaTimeModule())
+        .registerModule(new Jdk8Module())
+        .registerModule(new ParameterNamesModule());
+  }
+
   @Bean
   public RedisCacheConfiguration cacheConfiguration(
       @Qualifier("redisObjectMapper") ObjectMapper objectMapper) {
     var serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
 
     return RedisCacheConfiguration.defaultCacheConfig()
-        .entryTtl(Duration.ofMinutes(1))
+        .entryTtl(props.cache().defaultTtl())
         .disableCachingNullValues()
         .serializeKeysWith(
             RedisSerializationContext.SerializationPair
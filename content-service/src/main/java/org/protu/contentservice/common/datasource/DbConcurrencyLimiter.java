@@ -0,0 +1,167 @@
+package org.protu.contentservice.common.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the number of connections checked out at once with a fair semaphore, so request threads
+ * (virtual ones in particular, which are cheap enough to outnumber the pool by orders of magnitude)
+ * queue here rather than inside the pool. A permit is taken in {@code getConnection} and returned
+ * when the connection is closed; waiting longer than {@code maxWait} fails like a pool timeout.
+ * <p>
+ * Publishes {@code db.limiter.wait} (tagged by outcome), {@code db.limiter.permits.available} and
+ * {@code db.limiter.waiting}.
+ */
+public class DbConcurrencyLimiter implements MeterBinder {
+
+  private static final String ACQUIRED = "acquired";
+  private static final String TIMED_OUT = "timeout";
+
+  private final Semaphore permits;
+  private final int maxPermits;
+  private final Duration maxWait;
+  private volatile Timer acquiredTimer;
+  private volatile Timer timedOutTimer;
+
+  public DbConcurrencyLimiter(int maxPermits, Duration maxWait) {
+    this.permits = new Semaphore(maxPermits, true);
+    this.maxPermits = maxPermits;
+    this.maxWait = maxWait;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    acquiredTimer = waitTimer(registry, ACQUIRED);
+    timedOutTimer = waitTimer(registry, TIMED_OUT);
+    Gauge.builder("db.limiter.permits.available", permits, Semaphore::availablePermits)
+        .description("Connection permits not currently held")
+        .tag("max", String.valueOf(maxPermits))
+        .register(registry);
+    Gauge.builder("db.limiter.waiting", permits, Semaphore::getQueueLength)
+        .description("Threads waiting for a connection permit")
+        .register(registry);
+  }
+
+  private static Timer waitTimer(MeterRegistry registry, String outcome) {
+    return Timer.builder("db.limiter.wait")
+        .description("Time spent waiting for a connection permit")
+        .tag("outcome", outcome)
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .register(registry);
+  }
+
+  public DataSource limit(DataSource target) {
+    return new LimitingDataSource(target, this);
+  }
+
+  int availablePermits() {
+    return permits.availablePermits();
+  }
+
+  private void acquire() throws SQLException {
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a database connection permit", e);
+    }
+
+    record(acquired ? acquiredTimer : timedOutTimer, System.nanoTime() - start);
+    if (!acquired) {
+      throw new SQLTransientConnectionException(
+          "No database connection permit available within " + maxWait.toMillis() + "ms");
+    }
+  }
+
+  private void release() {
+    permits.release();
+  }
+
+  private static void record(Timer timer, long nanos) {
+    if (timer != null) {
+      timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Connection guarded(Connection connection) {
+    AtomicBoolean released = new AtomicBoolean();
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "close" -> {
+          try {
+            connection.close();
+          } finally {
+            if (released.compareAndSet(false, true)) {
+              release();
+            }
+          }
+          return null;
+        }
+        case "equals" -> {
+          return proxy == args[0];
+        }
+        case "hashCode" -> {
+          return System.identityHashCode(proxy);
+        }
+        default -> {
+          try {
+            return method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+          }
+        }
+      }
+    };
+    return (Connection) Proxy.newProxyInstance(
+        DbConcurrencyLimiter.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+  }
+
+  private static final class LimitingDataSource extends DelegatingDataSource {
+
+    private final DbConcurrencyLimiter limiter;
+
+    private LimitingDataSource(DataSource target, DbConcurrencyLimiter limiter) {
+      super(target);
+      this.limiter = limiter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      limiter.acquire();
+      try {
+        return limiter.guarded(obtainTargetDataSource().getConnection());
+      } catch (SQLException | RuntimeException e) {
+        limiter.release();
+        throw e;
+      }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+      limiter.acquire();
+      try {
+        return limiter.guarded(obtainTargetDataSource().getConnection(username, password));
+      } catch (SQLException | RuntimeException e) {
+        limiter.release();
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.protu.contentservice.common.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+
+/**
+ * Remembers which users committed a read-write transaction within the read-your-writes window, so
+ * their read-only transactions can be kept on the primary until replicas have caught up. Users are
+ * taken from the authenticated JWT of the current thread; work without one is never pinned, and
+ * writes outside a transaction or off the request thread are reported through {@link #markWrote}.
+ * <p>
+ * Shared catalog changes are tracked the same way through {@link #catalogChanged}: for one window
+ * every read goes to the primary, so a cache refilled after the change is not loaded from a replica
+ * that has not replayed it yet.
+ * <p>
+ * The window is local to this instance.
+ */
+public class RecentWriters implements TransactionExecutionListener {
+
+  private final Cache<Long, Boolean> writers;
+  private final long windowNanos;
+  private volatile long catalogPinnedUntil;
+
+  public RecentWriters(Duration window) {
+    this.writers = Caffeine.newBuilder()
+        .expireAfterWrite(window)
+        .build();
+    this.windowNanos = window.toNanos();
+    this.catalogPinnedUntil = System.nanoTime();
+  }
+
+  @Override
+  public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+    if (commitFailure == null && !transaction.isReadOnly()) {
+      Long userId = currentUserId();
+      if (userId != null) {
+        writers.put(userId, Boolean.TRUE);
+      }
+    }
+  }
+
+  public void markWrote(long userId) {
+    writers.put(userId, Boolean.TRUE);
+  }
+
+  public void catalogChanged() {
+    catalogPinnedUntil = System.nanoTime() + windowNanos;
+  }
+
+  public boolean catalogChangedRecently() {
+    return System.nanoTime() - catalogPinnedUntil < 0;
+  }
+
+  public boolean currentUserWroteRecently() {
+    Long userId = currentUserId();
+    return userId != null && writers.getIfPresent(userId) != null;
+  }
+
+  private static Long currentUserId() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt
+        && jwt.getClaim("id") instanceof Number id) {
+      return id.longValue();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,214 @@
+package org.protu.contentservice.common.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes read-only transactions to replicas. {@link #route(DataSource)} puts the primary behind a
+ * {@link LazyConnectionDataSourceProxy}, which fetches the physical connection at the first
+ * statement, once the transaction's read-only flag is known, and takes read-only connections from
+ * here:
+ * <ul>
+ *   <li>users who wrote within the read-your-writes window read from the primary ({@link RecentWriters});</li>
+ *   <li>so does everyone for one window after a shared catalog change, while caches refill;</li>
+ *   <li>otherwise replicas are tried round-robin, skipping any marked down;</li>
+ *   <li>with no replica reachable, the primary serves the read.</li>
+ * </ul>
+ * A replica is marked down when it refuses a connection or when the health check finds it more than
+ * {@code maxLag} behind, and up again by the first health check it passes.
+ */
+public class ReplicaRouter implements MeterBinder, DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(ReplicaRouter.class);
+
+  // lag is zero once everything received has been replayed, so an idle primary does not read as lag
+  private static final String LAG_SQL = """
+      SELECT CASE
+        WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+        ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 'Infinity')
+      END
+      """;
+
+  public static final class Replica {
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean healthy = true;
+    private volatile double lagSeconds;
+
+    public Replica(String name, DataSource dataSource) {
+      this.name = name;
+      this.dataSource = dataSource;
+    }
+  }
+
+  private final List<Replica> replicas;
+  private final RecentWriters recentWriters;
+  private final Duration maxLag;
+  private final AtomicInteger next = new AtomicInteger();
+  private final ThreadPoolTaskScheduler healthChecker;
+  private volatile Counter toReplica;
+  private volatile Counter pinnedToPrimary;
+  private volatile Counter catalogToPrimary;
+  private volatile Counter failedOverToPrimary;
+
+  public ReplicaRouter(List<Replica> replicas, RecentWriters recentWriters, Duration maxLag, Duration healthCheckInterval) {
+    this.replicas = List.copyOf(replicas);
+    this.recentWriters = recentWriters;
+    this.maxLag = maxLag;
+    this.healthChecker = startHealthChecker(healthCheckInterval);
+  }
+
+  private ThreadPoolTaskScheduler startHealthChecker(Duration interval) {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setThreadNamePrefix("replica-health-");
+    scheduler.setDaemon(true);
+    scheduler.initialize();
+    scheduler.scheduleWithFixedDelay(this::checkHealth, Instant.now().plus(interval), interval);
+    return scheduler;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    toReplica = routed(registry, "replica", "read-only");
+    pinnedToPrimary = routed(registry, "primary", "read-your-writes");
+    catalogToPrimary = routed(registry, "primary", "catalog-write");
+    failedOverToPrimary = routed(registry, "primary", "no-replica-available");
+    for (Replica replica : replicas) {
+      Gauge.builder("db.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+          .tag("replica", replica.name)
+          .register(registry);
+      Gauge.builder("db.replica.lag", replica, r -> r.lagSeconds)
+          .tag("replica", replica.name)
+          .baseUnit("seconds")
+          .register(registry);
+    }
+  }
+
+  private static Counter routed(MeterRegistry registry, String target, String reason) {
+    return Counter.builder("db.routing.reads")
+        .description("Read-only connections by target")
+        .tag("target", target)
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  public DataSource route(DataSource primary) {
+    LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+    proxy.setReadOnlyDataSource(new ReadOnlyDataSource(primary));
+    return proxy;
+  }
+
+  void checkHealth() {
+    for (Replica replica : replicas) {
+      try (Connection connection = replica.dataSource.getConnection();
+           Statement statement = connection.createStatement();
+           ResultSet rs = statement.executeQuery(LAG_SQL)) {
+        rs.next();
+        replica.lagSeconds = rs.getDouble(1);
+        boolean caughtUp = replica.lagSeconds <= maxLag.toMillis() / 1000.0;
+        if (caughtUp != replica.healthy) {
+          log.warn("Replica {} is {} ({}s behind)", replica.name, caughtUp ? "back in rotation" : "lagging", replica.lagSeconds);
+        }
+        replica.healthy = caughtUp;
+      } catch (SQLException | RuntimeException e) {
+        markDown(replica, e);
+      }
+    }
+  }
+
+  boolean isHealthy(String name) {
+    return replicas.stream().anyMatch(replica -> replica.name.equals(name) && replica.healthy);
+  }
+
+  private static void markDown(Replica replica, Exception cause) {
+    if (replica.healthy) {
+      log.warn("Replica {} is down, reads fail over to the primary: {}", replica.name, cause.getMessage());
+    }
+    replica.healthy = false;
+  }
+
+  private static void increment(Counter counter) {
+    if (counter != null) {
+      counter.increment();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    healthChecker.shutdown();
+    for (Replica replica : replicas) {
+      if (replica.dataSource instanceof Closeable pool) {
+        try {
+          pool.close();
+        } catch (IOException e) {
+          log.warn("Failed to close replica pool {}", replica.name, e);
+        }
+      }
+    }
+  }
+
+  private final class ReadOnlyDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+
+    private ReadOnlyDataSource(DataSource primary) {
+      this.primary = primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      if (recentWriters.currentUserWroteRecently()) {
+        increment(pinnedToPrimary);
+        return primary.getConnection();
+      }
+      if (recentWriters.catalogChangedRecently()) {
+        increment(catalogToPrimary);
+        return primary.getConnection();
+      }
+
+      int start = next.getAndIncrement();
+      for (int i = 0; i < replicas.size(); i++) {
+        Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+        if (!replica.healthy) {
+          continue;
+        }
+        try {
+          Connection connection = replica.dataSource.getConnection();
+          increment(toReplica);
+          return connection;
+        } catch (SQLException e) {
+          markDown(replica, e);
+        }
+      }
+
+      increment(failedOverToPrimary);
+      return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+      return primary.getConnection(username, password);
+    }
+  }
+}
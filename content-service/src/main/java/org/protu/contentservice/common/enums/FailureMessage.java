@@ -6,7 +6,9 @@ public enum FailureMessage {
   User_NOT_FOUND("User is not found"),
   COURSE_HAS_NO_LESSONS("No lessons found in this course"),
   LESSON_ALREADY_COMPLETED("Lesson is already completed"),
-  LESSON_ALREADY_UNCOMPLETED("Lesson is already not completed");
+  LESSON_ALREADY_UNCOMPLETED("Lesson is already not completed"),
+  INVALID_PAGE_REQUEST("Invalid page request: %s"),
+  UPLOAD_QUEUE_FULL("Too many uploads are waiting, try again later");
 
 
   private final String message;
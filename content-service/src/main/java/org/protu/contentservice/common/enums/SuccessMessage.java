@@ -6,12 +6,16 @@ public enum SuccessMessage {
   CREATE_NEW_ENTITY("A new %s has been created successfully"),
   UPDATE_ENTITY("%s details have been updated successfully"),
   ADD_ENTITY_TO_PARENT_ENTITY("%s %s has been successfully added to the %s %s"),
+  COURSE_PIC_UPLOAD_ACCEPTED("Course picture upload has been accepted"),
 
   GET_USER_PROGRESS_IN_COURSE("User progress has been retrieved successfully"),
+  GET_USER_PROGRESS_DASHBOARD("User progress dashboard has been retrieved successfully"),
   USER_ENROLLED_IN_COURSE("User has enrolled in the course successfully"),
   USER_CANCELLED_ENROLLMENT_IN_COURSE("User has cancelled enrollment in the course successfully"),
   USER_COMPLETED_A_COURSE_LESSON("Lesson is marked completed successfully"),
-  USER_UNCOMPLETED_A_COURSE_LESSON("Lesson is marked uncompleted successfully");
+  USER_UNCOMPLETED_A_COURSE_LESSON("Lesson is marked uncompleted successfully"),
+  USER_APPLIED_LESSON_COMPLETIONS("Lesson completions have been applied"),
+  USER_REPLICA_REBUILT("User replica has been rebuilt from the user-service snapshot");
 
   public final String message;
 
@@ -0,0 +1,184 @@
+package org.protu.contentservice.common.etag;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Version counters for catalog entities, used to build ETags.
+ * <p>
+ * Redis holds the authoritative counters; every instance keeps a bounded local mirror that is updated
+ * from the version channel, so checking an {@code If-None-Match} header is usually a map lookup. Mirror
+ * entries are reloaded from Redis in the background once they reach {@code refresh-after-write}, and
+ * the whole mirror is dropped whenever the channel is (re)subscribed, so changes published while this
+ * instance was disconnected are picked up. Bumps are applied after the surrounding transaction
+ * commits, so a new version is never paired with old data.
+ */
+@Component
+public class EntityVersions implements MessageListener, SubscriptionListener {
+
+  public static final String COURSES = "courses";
+  public static final String TRACKS = "tracks";
+  public static final String LESSONS = "lessons";
+
+  private static final String KEY_PREFIX = "entity-version::";
+  private static final String GENERATION_KEY = KEY_PREFIX + "generation";
+
+  private static final Logger log = LoggerFactory.getLogger(EntityVersions.class);
+
+  private final StringRedisTemplate redis;
+  private final LoadingCache<String, Long> versions;
+  private final LoadingCache<String, String> generations;
+  private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+  private final String channel;
+
+  public EntityVersions(StringRedisTemplate redis, AppProperties props) {
+    this.redis = redis;
+    this.channel = props.cache().versionChannel();
+
+    AppProperties.Cache.Versions mirror = props.cache().versions();
+    this.versions = Caffeine.newBuilder()
+        .maximumSize(mirror.maximumSize())
+        .refreshAfterWrite(mirror.refreshAfterWrite())
+        .expireAfterWrite(mirror.expireAfterWrite())
+        .build(this::loadVersion);
+    this.generations = Caffeine.newBuilder()
+        .refreshAfterWrite(mirror.refreshAfterWrite())
+        .build(this::loadGeneration);
+  }
+
+  public static String course(String courseName) {
+    return "course:" + courseName;
+  }
+
+  public static String track(String trackName) {
+    return "track:" + trackName;
+  }
+
+  public static String lesson(String lessonName) {
+    return "lesson:" + lessonName;
+  }
+
+  public static String user(long userId) {
+    return "user:" + userId;
+  }
+
+  public static String variant(String etag, String suffix) {
+    return etag.substring(0, etag.length() - 1) + "-" + suffix + "\"";
+  }
+
+  /**
+   * Registers a callback run with the scope of every version change, local or received from a peer.
+   */
+  public void onChange(Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  private void changed(String scope) {
+    for (Consumer<String> listener : listeners) {
+      listener.accept(scope);
+    }
+  }
+
+  private Long loadVersion(String scope) {
+    String stored = redis.opsForValue().get(KEY_PREFIX + scope);
+    return stored == null ? 0L : Long.parseLong(stored);
+  }
+
+  private String loadGeneration(String key) {
+    redis.opsForValue().setIfAbsent(key, UUID.randomUUID().toString().substring(0, 8));
+    String loaded = redis.opsForValue().get(key);
+
+    // a new generation means Redis lost its counters, so the mirrored ones are ahead of them
+    String previous = generations.asMap().get(key);
+    if (previous != null && !previous.equals(loaded)) {
+      log.info("Entity version generation changed from {} to {}, dropping mirrored versions", previous, loaded);
+      versions.invalidateAll();
+    }
+    return loaded;
+  }
+
+  private String generation() {
+    return generations.get(GENERATION_KEY);
+  }
+
+  private long version(String scope) {
+    return versions.get(scope);
+  }
+
+  public String etag(String... scopes) {
+    StringBuilder etag = new StringBuilder("\"").append(generation());
+    for (String scope : scopes) {
+      etag.append('-').append(version(scope));
+    }
+    return etag.append('"').toString();
+  }
+
+  public void bump(String... scopes) {
+    String[] distinct = Arrays.stream(scopes).filter(Objects::nonNull).distinct().toArray(String[]::new);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          bumpNow(distinct);
+        }
+      });
+    } else {
+      bumpNow(distinct);
+    }
+  }
+
+  private void bumpNow(String[] scopes) {
+    for (String scope : scopes) {
+      Long version = redis.opsForValue().increment(KEY_PREFIX + scope);
+      if (version == null) {
+        continue;
+      }
+
+      versions.asMap().merge(scope, version, Math::max);
+      changed(scope);
+      redis.convertAndSend(channel, scope + "=" + version);
+    }
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    int separator = body.lastIndexOf('=');
+    if (separator <= 0) {
+      return;
+    }
+
+    String scope = body.substring(0, separator);
+    versions.asMap().merge(scope, Long.parseLong(body.substring(separator + 1)), Math::max);
+    changed(scope);
+  }
+
+  /**
+   * Called on every (re)subscription of the version channel; bumps published while the subscription
+   * was down never reach {@link #onMessage}, so the mirror is reloaded from Redis instead.
+   */
+  @Override
+  public void onChannelSubscribed(byte[] channel, long count) {
+    versions.invalidateAll();
+    generations.invalidateAll();
+  }
+}
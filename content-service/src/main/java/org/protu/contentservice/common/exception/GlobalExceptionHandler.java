@@ -11,6 +11,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.client.RestClientResponseException;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -48,6 +49,18 @@ public class GlobalExceptionHandler {
     return buildFailureApiResponse("Lesson Completion conflict", errors, HttpStatus.CONFLICT, apiVersion, request);
   }
 
+  @ExceptionHandler(InvalidPageRequestException.class)
+  public ResponseEntity<ApiResponse<ErrorDetails>> handleInvalidPageRequestException(InvalidPageRequestException e, HttpServletRequest request) {
+    List<ErrorDetails> errors = List.of(buildErrorDetails(HttpStatus.BAD_REQUEST.value(), e.getMessage()));
+    return buildFailureApiResponse("Invalid page request", errors, HttpStatus.BAD_REQUEST, apiVersion, request);
+  }
+
+  @ExceptionHandler(UploadQueueFullException.class)
+  public ResponseEntity<ApiResponse<ErrorDetails>> handleUploadQueueFullException(UploadQueueFullException e, HttpServletRequest request) {
+    List<ErrorDetails> errors = List.of(buildErrorDetails(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage()));
+    return buildFailureApiResponse("Upload queue full", errors, HttpStatus.SERVICE_UNAVAILABLE, apiVersion, request);
+  }
+
   @ExceptionHandler(MethodArgumentNotValidException.class)
   public ResponseEntity<ApiResponse<ErrorDetails>> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex, HttpServletRequest request) {
     List<ErrorDetails> errors = ex.getBindingResult().getAllErrors().stream()
@@ -82,6 +95,13 @@ public class GlobalExceptionHandler {
     return buildFailureApiResponse("User Not Found", errors, HttpStatus.NOT_FOUND, apiVersion, request);
   }
 
+  @ExceptionHandler(RestClientResponseException.class)
+  public ResponseEntity<ApiResponse<ErrorDetails>> handleRestClientResponseException(RestClientResponseException e, HttpServletRequest request) {
+    HttpStatus status = HttpStatus.valueOf(e.getStatusCode().value());
+    List<ErrorDetails> errors = List.of(buildErrorDetails(status.value(), e.getMessage()));
+    return buildFailureApiResponse("Upstream service error", errors, status, apiVersion, request);
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<ApiResponse<ErrorDetails>> handleException(Exception e, HttpServletRequest request) {
     List<ErrorDetails> errors = List.of(buildErrorDetails(HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage()));
@@ -0,0 +1,9 @@
+package org.protu.contentservice.common.exception.custom;
+
+import org.protu.contentservice.common.enums.FailureMessage;
+
+public class InvalidPageRequestException extends RuntimeException {
+  public InvalidPageRequestException(String details) {
+    super(FailureMessage.INVALID_PAGE_REQUEST.getMessage(details));
+  }
+}
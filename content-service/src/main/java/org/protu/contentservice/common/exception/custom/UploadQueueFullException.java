@@ -0,0 +1,9 @@
+package org.protu.contentservice.common.exception.custom;
+
+import org.protu.contentservice.common.enums.FailureMessage;
+
+public class UploadQueueFullException extends RuntimeException {
+  public UploadQueueFullException() {
+    super(FailureMessage.UPLOAD_QUEUE_FULL.getMessage());
+  }
+}
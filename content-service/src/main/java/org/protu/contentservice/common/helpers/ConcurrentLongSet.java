@@ -0,0 +1,178 @@
+package org.protu.contentservice.common.helpers;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing set of positive {@code long}s with linear probing.
+ * <p>
+ * Lookups are optimistic reads that take no lock and allocate nothing; writers are serialized by a
+ * {@link StampedLock}, and a lookup that overlapped a write is retried under the read lock. Removal
+ * shifts the following cluster back instead of leaving tombstones, so probe lengths stay short.
+ */
+public final class ConcurrentLongSet {
+
+  private static final long EMPTY = 0L;
+  private static final int MIN_CAPACITY = 16;
+
+  private final StampedLock lock = new StampedLock();
+  private long[] table;
+  private int size;
+
+  public ConcurrentLongSet() {
+    this(MIN_CAPACITY);
+  }
+
+  public ConcurrentLongSet(int expectedSize) {
+    table = new long[tableSizeFor(expectedSize)];
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    // keep the load factor at or below one half
+    int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+    return Math.max(MIN_CAPACITY, capacity);
+  }
+
+  private static int slot(long value, int mask) {
+    long hash = value * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private static boolean contains(long[] table, long value) {
+    int mask = table.length - 1;
+    for (int i = slot(value, mask); ; i = (i + 1) & mask) {
+      long current = table[i];
+      if (current == value) {
+        return true;
+      }
+      if (current == EMPTY) {
+        return false;
+      }
+    }
+  }
+
+  public boolean contains(long value) {
+    if (value <= 0) {
+      return false;
+    }
+
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      // the table is at most half full in every state a writer leaves it in, so a probe over a
+      // concurrently changing table still terminates; validation decides whether to trust it
+      boolean found = contains(table, value);
+      if (lock.validate(stamp)) {
+        return found;
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      return contains(table, value);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  public boolean add(long value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("Only positive values can be stored: " + value);
+    }
+
+    long stamp = lock.writeLock();
+    try {
+      if ((size + 1) * 2 > table.length) {
+        resize(table.length << 1);
+      }
+      if (!insert(table, value)) {
+        return false;
+      }
+      size++;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public void addAll(long[] values) {
+    long stamp = lock.writeLock();
+    try {
+      if ((size + values.length) * 2 > table.length) {
+        resize(tableSizeFor(size + values.length));
+      }
+      for (long value : values) {
+        if (value > 0 && insert(table, value)) {
+          size++;
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public boolean remove(long value) {
+    if (value <= 0) {
+      return false;
+    }
+
+    long stamp = lock.writeLock();
+    try {
+      long[] table = this.table;
+      int mask = table.length - 1;
+      int i = slot(value, mask);
+      while (table[i] != value) {
+        if (table[i] == EMPTY) {
+          return false;
+        }
+        i = (i + 1) & mask;
+      }
+
+      // backward-shift deletion: pull later entries of the cluster into the gap
+      int gap = i;
+      for (int j = (gap + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+        int home = slot(table[j], mask);
+        boolean movable = gap <= j ? (home <= gap || home > j) : (home <= gap && home > j);
+        if (movable) {
+          table[gap] = table[j];
+          gap = j;
+        }
+      }
+      table[gap] = EMPTY;
+      size--;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private static boolean insert(long[] table, long value) {
+    int mask = table.length - 1;
+    int i = slot(value, mask);
+    while (table[i] != EMPTY) {
+      if (table[i] == value) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    table[i] = value;
+    return true;
+  }
+
+  private void resize(int capacity) {
+    long[] next = new long[capacity];
+    for (long value : table) {
+      if (value != EMPTY) {
+        insert(next, value);
+      }
+    }
+    table = next;
+  }
+}
@@ -0,0 +1,187 @@
+package org.protu.contentservice.common.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Builds single-member gzip streams around a payload that was compressed once, ahead of time.
+ * <p>
+ * {@link #compress(byte[])} produces a regular gzip member whose deflate data ends with a sync
+ * flush followed by an empty final block. {@link #splice(byte[], byte[], byte[])} drops that final
+ * block, compresses only the small prefix and suffix, and stitches the three deflate streams
+ * together with a combined CRC, so the stored payload is never recompressed.
+ */
+public final class GzipSplicer {
+
+  private static final int HEADER_LENGTH = 10;
+  private static final int TRAILER_LENGTH = 8;
+  private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+  private static final byte[] EMPTY_FINAL_BLOCK = {0x03, 0x00};
+
+  private GzipSplicer() {
+  }
+
+  public static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if (parts[0].trim().equalsIgnoreCase("gzip")) {
+        return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  public static byte[] compress(byte[] data) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 32);
+    out.writeBytes(HEADER);
+    deflate(data, Deflater.SYNC_FLUSH, out);
+    out.writeBytes(EMPTY_FINAL_BLOCK);
+    writeTrailer(out, crc(data), data.length);
+    return out.toByteArray();
+  }
+
+  public static byte[] splice(byte[] prefix, byte[] compressedMember, byte[] suffix) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(compressedMember.length + prefix.length + suffix.length);
+    try {
+      splice(prefix, compressedMember, suffix, out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  public static void splice(byte[] prefix, byte[] compressedMember, byte[] suffix, OutputStream out) throws IOException {
+    int bodyEnd = compressedMember.length - TRAILER_LENGTH - EMPTY_FINAL_BLOCK.length;
+    if (bodyEnd < HEADER_LENGTH
+        || compressedMember[bodyEnd] != EMPTY_FINAL_BLOCK[0]
+        || compressedMember[bodyEnd + 1] != EMPTY_FINAL_BLOCK[1]) {
+      throw new IllegalArgumentException("Payload was not produced by GzipSplicer.compress");
+    }
+
+    int middleCrc = readIntLE(compressedMember, compressedMember.length - TRAILER_LENGTH);
+    int middleLength = readIntLE(compressedMember, compressedMember.length - 4);
+
+    ByteArrayOutputStream head = new ByteArrayOutputStream(prefix.length + HEADER_LENGTH);
+    head.writeBytes(HEADER);
+    deflate(prefix, Deflater.SYNC_FLUSH, head);
+
+    ByteArrayOutputStream tail = new ByteArrayOutputStream(suffix.length + TRAILER_LENGTH + 16);
+    deflate(suffix, Deflater.FULL_FLUSH, tail);
+    tail.writeBytes(EMPTY_FINAL_BLOCK);
+
+    long crc = crc(prefix);
+    crc = combineCrc(crc, middleCrc & 0xffffffffL, middleLength & 0xffffffffL);
+    crc = combineCrc(crc, crc(suffix), suffix.length);
+    writeTrailer(tail, crc, prefix.length + middleLength + suffix.length);
+
+    head.writeTo(out);
+    out.write(compressedMember, HEADER_LENGTH, bodyEnd - HEADER_LENGTH);
+    tail.writeTo(out);
+  }
+
+  private static void deflate(byte[] data, int flush, ByteArrayOutputStream out) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    try {
+      deflater.setInput(data);
+      byte[] buffer = new byte[Math.max(64, data.length / 2)];
+      int written;
+      do {
+        written = deflater.deflate(buffer, 0, buffer.length, flush);
+        out.write(buffer, 0, written);
+      } while (written == buffer.length || !deflater.needsInput());
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static long crc(byte[] data) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(data);
+    return crc32.getValue();
+  }
+
+  private static void writeTrailer(ByteArrayOutputStream out, long crc, long length) {
+    writeIntLE(out, (int) crc);
+    writeIntLE(out, (int) length);
+  }
+
+  private static void writeIntLE(ByteArrayOutputStream out, int value) {
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+
+  private static int readIntLE(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xff)
+        | (bytes[offset + 1] & 0xff) << 8
+        | (bytes[offset + 2] & 0xff) << 16
+        | (bytes[offset + 3] & 0xff) << 24;
+  }
+
+  // crc32_combine from zlib: CRC of A||B from crc(A), crc(B) and len(B)
+  static long combineCrc(long crc1, long crc2, long length2) {
+    if (length2 <= 0) {
+      return crc1;
+    }
+
+    long[] even = new long[32];
+    long[] odd = new long[32];
+
+    odd[0] = 0xedb88320L;
+    long row = 1;
+    for (int n = 1; n < 32; n++) {
+      odd[n] = row;
+      row <<= 1;
+    }
+
+    gf2MatrixSquare(even, odd);
+    gf2MatrixSquare(odd, even);
+
+    do {
+      gf2MatrixSquare(even, odd);
+      if ((length2 & 1) != 0) {
+        crc1 = gf2MatrixTimes(even, crc1);
+      }
+      length2 >>= 1;
+      if (length2 == 0) {
+        break;
+      }
+
+      gf2MatrixSquare(odd, even);
+      if ((length2 & 1) != 0) {
+        crc1 = gf2MatrixTimes(odd, crc1);
+      }
+      length2 >>= 1;
+    } while (length2 != 0);
+
+    return (crc1 ^ crc2) & 0xffffffffL;
+  }
+
+  private static long gf2MatrixTimes(long[] matrix, long vector) {
+    long sum = 0;
+    int i = 0;
+    while (vector != 0) {
+      if ((vector & 1) != 0) {
+        sum ^= matrix[i];
+      }
+      vector >>>= 1;
+      i++;
+    }
+    return sum;
+  }
+
+  private static void gf2MatrixSquare(long[] square, long[] matrix) {
+    for (int n = 0; n < 32; n++) {
+      square[n] = gf2MatrixTimes(matrix, matrix[n]);
+    }
+  }
+}
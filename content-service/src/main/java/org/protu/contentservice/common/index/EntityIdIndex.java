@@ -0,0 +1,234 @@
+package org.protu.contentservice.common.index;
+
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Name to id lookups for courses, lessons and tracks, so write paths can go straight to id-keyed SQL.
+ * <p>
+ * Each index is an immutable map replaced on write, so lookups take no lock. The indexes are loaded
+ * once the application is ready; a miss falls back to the database. A name is dropped whenever the
+ * entity version of that name changes, locally or on a peer, which covers renames and deletes.
+ * <p>
+ * An eviction can still be missed, for example while the version channel is disconnected. Callers
+ * whose id-keyed statement matched nothing therefore ask {@link #courseIdChanged}, {@link #lessonIdChanged}
+ * or {@link #trackIdChanged},
+ * which re-read the name and throw {@link EntityNotFoundException} if it is gone.
+ */
+@Component
+public class EntityIdIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(EntityIdIndex.class);
+
+  private final JdbcClient jdbcClient;
+  private final NameIndex courses = new NameIndex("courses", "Course");
+  private final NameIndex lessons = new NameIndex("lessons", "Lesson");
+  private final NameIndex tracks = new NameIndex("tracks", "Track");
+
+  public EntityIdIndex(JdbcClient jdbcClient, EntityVersions versions) {
+    this.jdbcClient = jdbcClient;
+    versions.onChange(this::evict);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    for (NameIndex index : new NameIndex[]{courses, lessons, tracks}) {
+      long epoch = index.epoch();
+      try {
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcClient.sql("SELECT name, id FROM " + index.table)
+            .query(rs -> {
+              ids.put(rs.getString("name"), rs.getInt("id"));
+            });
+        index.replaceIfUnchanged(ids, epoch);
+      } catch (DataAccessException e) {
+        log.warn("Could not preload the {} name index, names will be resolved on demand", index.table, e);
+      }
+    }
+  }
+
+  public int courseId(String courseName) {
+    return resolve(courses, courseName);
+  }
+
+  public int lessonId(String lessonName) {
+    return resolve(lessons, lessonName);
+  }
+
+  public int trackId(String trackName) {
+    return resolve(tracks, trackName);
+  }
+
+  /**
+   * Re-reads the id of {@code courseName} from the database and reports whether it differs from
+   * {@code seenId}; {@link #courseId} returns the fresh id afterwards.
+   */
+  public boolean courseIdChanged(String courseName, int seenId) {
+    return reload(courses, courseName) != seenId;
+  }
+
+  /**
+   * Re-reads the id of {@code lessonName} from the database and reports whether it differs from
+   * {@code seenId}; {@link #lessonId} returns the fresh id afterwards.
+   */
+  public boolean lessonIdChanged(String lessonName, int seenId) {
+    return reload(lessons, lessonName) != seenId;
+  }
+
+  /**
+   * Re-reads the id of {@code trackName} from the database and reports whether it differs from
+   * {@code seenId}; {@link #trackId} returns the fresh id afterwards.
+   */
+  public boolean trackIdChanged(String trackName, int seenId) {
+    return reload(tracks, trackName) != seenId;
+  }
+
+  /**
+   * Resolves many course names with at most one query for the names missing from the index.
+   * Unknown names are left out of the result.
+   */
+  public Map<String, Integer> courseIds(Collection<String> courseNames) {
+    return resolveAll(courses, courseNames);
+  }
+
+  /**
+   * Resolves many lesson names with at most one query for the names missing from the index.
+   * Unknown names are left out of the result.
+   */
+  public Map<String, Integer> lessonIds(Collection<String> lessonNames) {
+    return resolveAll(lessons, lessonNames);
+  }
+
+  /**
+   * Drops the name behind an entity version scope such as {@code course:<name>}; other scopes are ignored.
+   */
+  public void evict(String scope) {
+    int separator = scope.indexOf(':');
+    if (separator < 0) {
+      return;
+    }
+
+    String name = scope.substring(separator + 1);
+    switch (scope.substring(0, separator)) {
+      case "course" -> courses.remove(name);
+      case "lesson" -> lessons.remove(name);
+      case "track" -> tracks.remove(name);
+      default -> {
+      }
+    }
+  }
+
+  private int resolve(NameIndex index, String name) {
+    Integer id = index.get(name);
+    if (id != null) {
+      return id;
+    }
+
+    long epoch = index.epoch();
+    id = jdbcClient.sql("SELECT id FROM " + index.table + " WHERE name = :name")
+        .param("name", name)
+        .query(Integer.class)
+        .optional()
+        .orElseThrow(() -> new EntityNotFoundException(index.entity, name));
+
+    index.putAllIfUnchanged(Map.of(name, id), epoch);
+    return id;
+  }
+
+  private int reload(NameIndex index, String name) {
+    index.remove(name);
+    return resolve(index, name);
+  }
+
+  private Map<String, Integer> resolveAll(NameIndex index, Collection<String> names) {
+    Map<String, Integer> resolved = new HashMap<>();
+    Set<String> missing = new HashSet<>();
+    for (String name : names) {
+      Integer id = index.get(name);
+      if (id != null) {
+        resolved.put(name, id);
+      } else {
+        missing.add(name);
+      }
+    }
+    if (missing.isEmpty()) {
+      return resolved;
+    }
+
+    long epoch = index.epoch();
+    Map<String, Integer> loaded = new HashMap<>();
+    jdbcClient.sql("SELECT name, id FROM " + index.table + " WHERE name IN (:names)")
+        .param("names", missing)
+        .query(rs -> {
+          loaded.put(rs.getString("name"), rs.getInt("id"));
+        });
+    index.putAllIfUnchanged(loaded, epoch);
+    resolved.putAll(loaded);
+    return resolved;
+  }
+
+  /**
+   * Copy-on-write map with a write epoch; a value read from the database is only published if no
+   * removal happened while it was being read.
+   */
+  private static final class NameIndex {
+
+    private final String table;
+    private final String entity;
+    private volatile Map<String, Integer> ids = Map.of();
+    private volatile long epoch;
+
+    private NameIndex(String table, String entity) {
+      this.table = table;
+      this.entity = entity;
+    }
+
+    Integer get(String name) {
+      return ids.get(name);
+    }
+
+    long epoch() {
+      return epoch;
+    }
+
+    synchronized void replaceIfUnchanged(Map<String, Integer> loaded, long seenEpoch) {
+      if (epoch == seenEpoch) {
+        ids = Map.copyOf(loaded);
+      }
+    }
+
+    // one copy per batch of loaded names, however many there are
+    synchronized void putAllIfUnchanged(Map<String, Integer> loaded, long seenEpoch) {
+      if (epoch != seenEpoch || loaded.isEmpty()) {
+        return;
+      }
+
+      Map<String, Integer> next = new HashMap<>(ids);
+      next.putAll(loaded);
+      ids = Collections.unmodifiableMap(next);
+    }
+
+    synchronized void remove(String name) {
+      epoch++;
+      if (ids.containsKey(name)) {
+        Map<String, Integer> next = new HashMap<>(ids);
+        next.remove(name);
+        ids = Collections.unmodifiableMap(next);
+      }
+    }
+  }
+}
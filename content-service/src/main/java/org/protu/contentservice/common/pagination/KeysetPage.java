@@ -0,0 +1,22 @@
+package org.protu.contentservice.common.pagination;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of results and the cursor of the next page, or {@code null} on the last page.
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+
+  /**
+   * Builds a page from up to {@code size + 1} rows; the extra row only signals that another page exists.
+   */
+  public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+    if (rows.size() <= size) {
+      return new KeysetPage<>(rows, null);
+    }
+
+    List<T> items = List.copyOf(rows.subList(0, size));
+    return new KeysetPage<>(items, cursorOf.apply(items.getLast()));
+  }
+}
@@ -0,0 +1,48 @@
+package org.protu.contentservice.common.pagination;
+
+import org.protu.contentservice.common.exception.custom.InvalidPageRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Also used as the cache key of that page.
+ */
+public record PageQuery(PageSort sort, String prefix, String cursor, int size) {
+
+  public static final int MAX_SIZE = 100;
+
+  public PageQuery {
+    if (size < 1 || size > MAX_SIZE) {
+      throw new InvalidPageRequestException("size must be between 1 and " + MAX_SIZE);
+    }
+    prefix = prefix == null || prefix.isBlank() ? null : prefix;
+    cursor = cursor == null || cursor.isBlank() ? null : cursor;
+  }
+
+  public static PageQuery of(String sort, String prefix, String cursor, int size) {
+    return new PageQuery(PageSort.from(sort), prefix, cursor, size);
+  }
+
+  public String likePattern() {
+    return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+  }
+
+  public Object after() {
+    return sort.decodeCursor(cursor);
+  }
+
+  /**
+   * Filter and keyset conditions on the un-aliased parent table; binds {@code :prefix} and {@code :after}.
+   */
+  public String whereClause() {
+    List<String> conditions = new ArrayList<>();
+    if (prefix != null) {
+      conditions.add("name LIKE :prefix ESCAPE '\\'");
+    }
+    if (cursor != null) {
+      conditions.add(sort.column() + " > :after");
+    }
+    return conditions.isEmpty() ? "TRUE" : String.join(" AND ", conditions);
+  }
+}
@@ -0,0 +1,48 @@
+package org.protu.contentservice.common.pagination;
+
+import org.protu.contentservice.common.exception.custom.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Sort keys supported by keyset pagination. Both columns are unique, so the last value of a page is
+ * enough to resume from.
+ */
+public enum PageSort {
+  ID("id"),
+  NAME("name");
+
+  private final String column;
+
+  PageSort(String column) {
+    this.column = column;
+  }
+
+  public static PageSort from(String sort) {
+    for (PageSort value : values()) {
+      if (value.column.equalsIgnoreCase(sort)) {
+        return value;
+      }
+    }
+    throw new InvalidPageRequestException("unknown sort key " + sort);
+  }
+
+  public String column() {
+    return column;
+  }
+
+  public String cursorOf(int id, String name) {
+    String value = this == ID ? String.valueOf(id) : name;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public Object decodeCursor(String cursor) {
+    try {
+      String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      return this == ID ? Integer.valueOf(value) : value;
+    } catch (IllegalArgumentException e) {
+      throw new InvalidPageRequestException("malformed cursor");
+    }
+  }
+}
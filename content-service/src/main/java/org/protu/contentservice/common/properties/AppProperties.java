@@ -1,12 +1,30 @@
 package org.protu.contentservice.common.properties;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
 @Validated
 @ConfigurationProperties("app")
-public record AppProperties(Api api, JWT jwt, Rabbit rabbit, Cloudinary cloudinary) {
+public record AppProperties(
+    Api api,
+    JWT jwt,
+    Rabbit rabbit,
+    Cloudinary cloudinary,
+    Cache cache,
+    ResponseCache responseCache,
+    Progress progress,
+    Replica replica,
+    Db db,
+    PicUploads picUploads) {
 
   public record Api(@NotBlank String version) {
   }
@@ -14,7 +32,7 @@ public record AppProperties(Api api, JWT jwt, Rabbit rabbit, Cloudinary cloudina
   public record JWT(@NotBlank String secret) {
   }
 
-  public record Rabbit(Exchange exchange, Queue queue, RoutingKey routingKey) {
+  public record Rabbit(Exchange exchange, Queue queue, RoutingKey routingKey, Batch batch, Dedupe dedupe) {
 
     public record Exchange(@NotBlank String userEvents) {
     }
@@ -28,6 +46,19 @@ public record AppProperties(Api api, JWT jwt, Rabbit rabbit, Cloudinary cloudina
         @NotBlank String userDeleted,
         @NotBlank String userPattern) {
     }
+
+    public record Batch(
+        boolean enabled,
+        @Positive int size,
+        @Positive int prefetch,
+        @Positive int concurrency,
+        @NotNull Duration receiveTimeout) {
+    }
+
+    public record Dedupe(
+        @Positive long maximumSize,
+        @NotNull Duration expireAfterWrite) {
+    }
   }
 
   public record Cloudinary(
@@ -35,4 +66,89 @@ public record AppProperties(Api api, JWT jwt, Rabbit rabbit, Cloudinary cloudina
       @NotBlank String apiKey,
       @NotBlank String apiSecret) {
   }
+
+  public record Cache(
+      @NotNull Duration defaultTtl,
+      @DecimalMin("0.1") @DecimalMax("1.0") double refreshAheadFraction,
+      Map<String, Spec> specs,
+      Local local,
+      LoadLock loadLock,
+      Versions versions,
+      @NotBlank String invalidationChannel,
+      @NotBlank String versionChannel) {
+
+    public Spec spec(String cacheName) {
+      Spec spec = specs == null ? null : specs.get(cacheName);
+      return spec != null ? spec : new Spec(defaultTtl, false);
+    }
+
+    public record Spec(@NotNull Duration ttl, boolean refreshAhead) {
+    }
+
+    public record Local(
+        @Positive long maximumSize,
+        @NotNull Duration expireAfterWrite) {
+    }
+
+    public record LoadLock(
+        @NotNull Duration ttl,
+        @NotNull Duration waitTimeout,
+        @NotNull Duration pollInterval) {
+    }
+
+    public record Versions(
+        @Positive long maximumSize,
+        @NotNull Duration refreshAfterWrite,
+        @NotNull Duration expireAfterWrite) {
+    }
+  }
+
+  public record ResponseCache(boolean enabled, boolean gzip) {
+  }
+
+  public record Progress(WriteBehind writeBehind) {
+
+    public record WriteBehind(
+        boolean enabled,
+        @Positive int capacity,
+        @Positive int batchSize,
+        @NotNull Duration flushInterval) {
+    }
+  }
+
+  public record Replica(Snapshot snapshot) {
+
+    public record Snapshot(
+        @NotBlank String url,
+        @NotNull Duration clockSkew) {
+    }
+  }
+
+  public record PicUploads(
+      @Positive int workers,
+      @Positive int queueCapacity,
+      @NotNull Duration jobTtl) {
+  }
+
+  public record Db(Limiter limiter, Replicas replicas) {
+
+    public record Limiter(
+        boolean enabled,
+        @Positive int permits,
+        @NotNull Duration maxWait) {
+    }
+
+    public record Replicas(
+        boolean enabled,
+        List<Endpoint> endpoints,
+        @NotNull Duration readYourWrites,
+        @NotNull Duration maxLag,
+        @NotNull Duration healthCheckInterval,
+        @NotNull Duration connectionTimeout,
+        @Positive int poolSize) {
+
+      public record Endpoint(@NotBlank String url, String username, String password) {
+      }
+    }
+  }
 }
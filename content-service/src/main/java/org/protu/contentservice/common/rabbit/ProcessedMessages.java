@@ -0,0 +1,35 @@
+package org.protu.contentservice.common.rabbit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded record of recently applied message ids, so redeliveries and publisher retries are
+ * dropped before they reach the database. Ids are recorded only once their effects are applied;
+ * entries evicted by size or age fall back to the replica's own event ordering guard.
+ */
+@Component
+public class ProcessedMessages {
+
+  private final Cache<String, Boolean> processed;
+
+  public ProcessedMessages(AppProperties props) {
+    AppProperties.Rabbit.Dedupe dedupe = props.rabbit().dedupe();
+    this.processed = Caffeine.newBuilder()
+        .maximumSize(dedupe.maximumSize())
+        .expireAfterWrite(dedupe.expireAfterWrite())
+        .build();
+  }
+
+  public boolean isProcessed(String messageId) {
+    return messageId != null && processed.getIfPresent(messageId) != null;
+  }
+
+  public void markProcessed(String messageId) {
+    if (messageId != null) {
+      processed.put(messageId, Boolean.TRUE);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.protu.contentservice.common.response;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.protu.contentservice.common.helpers.GzipSplicer;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in cache of serialized response data for the catalog listings.
+ * <p>
+ * The {@code data} JSON (and its gzip form) is built once per catalog version and written straight to
+ * the servlet output stream; per request only the small envelope around it is serialized, with
+ * {@link PrecompressedJsonResponses#PLACEHOLDER} standing in for the data.
+ * <p>
+ * Concurrent requests for a version that is not built yet share one build, which runs outside the
+ * map so other listings are not blocked behind it. The {@code data} supplier should read the
+ * database rather than a listing cache: the body outlives the cache entry it would be built from.
+ */
+@Component
+public class CachedResponseBodies {
+
+  private final ObjectMapper objectMapper;
+  private final PrecompressedJsonResponses precompressedResponses;
+  private final AppProperties.ResponseCache props;
+  private final ConcurrentMap<String, Body> bodies = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<Body>> inFlight = new ConcurrentHashMap<>();
+
+  public CachedResponseBodies(
+      ObjectMapper objectMapper,
+      PrecompressedJsonResponses precompressedResponses,
+      AppProperties props) {
+
+    this.objectMapper = objectMapper;
+    this.precompressedResponses = precompressedResponses;
+    this.props = props.responseCache();
+  }
+
+  public boolean isEnabled() {
+    return props.enabled();
+  }
+
+  public boolean servesGzip(String acceptEncoding) {
+    return props.enabled() && props.gzip() && GzipSplicer.acceptsGzip(acceptEncoding);
+  }
+
+  private Body build(String listing, String version, Supplier<?> data) {
+    byte[] json;
+    try {
+      json = objectMapper.writeValueAsBytes(data.get());
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize " + listing, e);
+    }
+    return new Body(version, json, props.gzip() ? GzipSplicer.compress(json) : null);
+  }
+
+  private Body body(String listing, String version, Supplier<?> data) {
+    Body current = bodies.get(listing);
+    if (current != null && current.version().equals(version)) {
+      return current;
+    }
+
+    String flightKey = listing + "@" + version;
+    CompletableFuture<Body> flight = new CompletableFuture<>();
+    CompletableFuture<Body> existing = inFlight.putIfAbsent(flightKey, flight);
+    if (existing != null) {
+      return awaitFlight(existing);
+    }
+
+    try {
+      Body built = build(listing, version, data);
+      // keep a body another request installed for this version meanwhile
+      bodies.merge(listing, built, (installed, candidate) -> installed.version().equals(version) ? installed : candidate);
+      flight.complete(built);
+      return built;
+    } catch (RuntimeException e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(flightKey, flight);
+    }
+  }
+
+  private static Body awaitFlight(CompletableFuture<Body> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  public void write(
+      String listing,
+      String version,
+      Supplier<?> data,
+      ResponseEntity<? extends ApiResponse<?>> envelope,
+      boolean gzip,
+      HttpServletResponse response) throws IOException {
+
+    Body body = body(listing, version, data);
+    PrecompressedJsonResponses.Split split = precompressedResponses.split(envelope);
+
+    response.setStatus(envelope.getStatusCode().value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    if (props.gzip()) {
+      response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    ServletOutputStream out = response.getOutputStream();
+    if (gzip && body.gzip() != null) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      GzipSplicer.splice(split.prefix(), body.gzip(), split.suffix(), out);
+    } else {
+      response.setContentLength(split.prefix().length + body.json().length + split.suffix().length);
+      out.write(split.prefix());
+      out.write(body.json());
+      out.write(split.suffix());
+    }
+    out.flush();
+  }
+
+  private record Body(String version, byte[] json, byte[] gzip) {
+  }
+}
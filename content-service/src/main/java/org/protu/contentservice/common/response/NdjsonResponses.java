@@ -0,0 +1,49 @@
+package org.protu.contentservice.common.response;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Streams a listing as newline-delimited JSON, one element per line, flushing each element as soon
+ * as the source hands it over.
+ */
+@Component
+public class NdjsonResponses {
+
+  private final ObjectMapper objectMapper;
+
+  public NdjsonResponses(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  public <T> ResponseEntity<StreamingResponseBody> stream(Consumer<Consumer<T>> source) {
+    StreamingResponseBody body = out -> {
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // lines end with the newline written after each value; Jackson's default root separator is a space
+        generator.setRootValueSeparator(null);
+        source.accept(item -> {
+          try {
+            objectMapper.writeValue(generator, item);
+            generator.writeRaw('\n');
+            generator.flush();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+    };
+
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(body);
+  }
+}
@@ -0,0 +1,77 @@
+package org.protu.contentservice.common.response;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.protu.contentservice.common.helpers.GzipSplicer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Writes an {@link ApiResponse} as a gzip body in which one JSON value was compressed ahead of time.
+ * The envelope is serialized with {@link #PLACEHOLDER} in place of that value and only the JSON
+ * around it is compressed per request.
+ */
+@Component
+public class PrecompressedJsonResponses {
+
+  public static final String PLACEHOLDER = "\u0000precompressed\u0000";
+
+  private final ObjectMapper objectMapper;
+  private final byte[] placeholderJson;
+
+  public PrecompressedJsonResponses(ObjectMapper objectMapper) throws JsonProcessingException {
+    this.objectMapper = objectMapper;
+    this.placeholderJson = objectMapper.writeValueAsBytes(PLACEHOLDER);
+  }
+
+  private static int indexOf(byte[] source, byte[] target) {
+    outer:
+    for (int i = 0; i <= source.length - target.length; i++) {
+      for (int j = 0; j < target.length; j++) {
+        if (source[i + j] != target[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  public Split split(ResponseEntity<? extends ApiResponse<?>> envelope) {
+    byte[] json;
+    try {
+      json = objectMapper.writeValueAsBytes(envelope.getBody());
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize response envelope", e);
+    }
+
+    int at = indexOf(json, placeholderJson);
+    if (at < 0) {
+      throw new IllegalStateException("Response envelope does not contain the precompressed placeholder");
+    }
+
+    return new Split(
+        Arrays.copyOfRange(json, 0, at),
+        Arrays.copyOfRange(json, at + placeholderJson.length, json.length));
+  }
+
+  public ResponseEntity<byte[]> gzip(ResponseEntity<? extends ApiResponse<?>> envelope, byte[] compressedJsonValue) {
+    Split split = split(envelope);
+
+    return ResponseEntity.status(envelope.getStatusCode())
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+        .body(GzipSplicer.splice(split.prefix(), compressedJsonValue, split.suffix()));
+  }
+
+  /**
+   * The serialized envelope on either side of the placeholder.
+   */
+  public record Split(byte[] prefix, byte[] suffix) {
+  }
+}
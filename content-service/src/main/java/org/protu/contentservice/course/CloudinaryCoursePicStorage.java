@@ -0,0 +1,34 @@
+package org.protu.contentservice.course;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+
+@Component
+public class CloudinaryCoursePicStorage implements CoursePicStorage {
+
+  private static final String ASSET_FOLDER = "courses-pic";
+
+  private final Cloudinary cloudinary;
+
+  // built on first upload, so contexts without Cloudinary credentials still start
+  public CloudinaryCoursePicStorage(@Lazy Cloudinary cloudinary) {
+    this.cloudinary = cloudinary;
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public StoredPic store(String courseName, String filename, byte[] content) throws IOException {
+    Map uploadResults = cloudinary.uploader().upload(content, ObjectUtils.asMap("asset_folder", ASSET_FOLDER));
+    return new StoredPic(uploadResults.get("secure_url").toString(), uploadResults.get("public_id").toString());
+  }
+
+  @Override
+  public void delete(String assetId) throws IOException {
+    cloudinary.uploader().destroy(assetId, ObjectUtils.emptyMap());
+  }
+}
@@ -1,19 +1,33 @@
 package org.protu.contentservice.course;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.protu.contentservice.common.enums.SuccessMessage;
+import org.protu.contentservice.common.etag.EntityVersions;
 import org.protu.contentservice.common.helpers.JwtHelper;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.pagination.PageQuery;
 import org.protu.contentservice.common.properties.AppProperties;
 import org.protu.contentservice.common.response.ApiResponse;
+import org.protu.contentservice.common.response.CachedResponseBodies;
+import org.protu.contentservice.common.response.NdjsonResponses;
+import org.protu.contentservice.common.response.PrecompressedJsonResponses;
 import org.protu.contentservice.lesson.dto.LessonWithoutContent;
 import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
+import org.protu.contentservice.progress.CompletionBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
+import java.util.UUID;
 
 import static org.protu.contentservice.common.response.ApiResponseBuilder.buildSuccessApiResponse;
 
@@ -24,11 +38,30 @@ public class CourseController {
   private final CourseService courseService;
   private final String apiVersion;
   private final JwtHelper jwtHelper;
+  private final EntityVersions versions;
+  private final CachedResponseBodies responseBodies;
+  private final NdjsonResponses ndjsonResponses;
+  private final CompletionBuffer completions;
+  private final CoursePicUploads picUploads;
+
+  public CourseController(
+      CourseService courseService,
+      AppProperties properties,
+      JwtHelper jwtHelper,
+      EntityVersions versions,
+      CachedResponseBodies responseBodies,
+      NdjsonResponses ndjsonResponses,
+      CompletionBuffer completions,
+      CoursePicUploads picUploads) {
 
-  public CourseController(CourseService courseService, AppProperties properties, JwtHelper jwtHelper) {
     this.courseService = courseService;
     apiVersion = properties.api().version();
     this.jwtHelper = jwtHelper;
+    this.versions = versions;
+    this.responseBodies = responseBodies;
+    this.ndjsonResponses = ndjsonResponses;
+    this.completions = completions;
+    this.picUploads = picUploads;
   }
 
   private Long getUserIdFromBearer(String bearerToken) {
@@ -37,13 +70,52 @@ public class CourseController {
   }
 
   @GetMapping
-  public ResponseEntity<ApiResponse<List<CourseWithLessons>>> getAllCourses(HttpServletRequest request) {
+  public ResponseEntity<ApiResponse<List<CourseWithLessons>>> getAllCourses(
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+      WebRequest webRequest,
+      HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+
+    boolean gzip = responseBodies.servesGzip(acceptEncoding);
+    String etag = versions.etag(EntityVersions.COURSES, EntityVersions.LESSONS);
+    if (webRequest.checkNotModified(gzip ? EntityVersions.variant(etag, "gzip") : etag)) {
+      return null;
+    }
 
-    List<CourseWithLessons> courses = courseService.getAllCourses();
     final String message = SuccessMessage.GET_ALL_ENTITIES.getMessage("Courses");
+    if (responseBodies.isEnabled()) {
+      var envelope = buildSuccessApiResponse(message, PrecompressedJsonResponses.PLACEHOLDER, HttpStatus.OK, apiVersion, request);
+      responseBodies.write("courses", etag, courseService::loadAllCourses, envelope, gzip, response);
+      return null;
+    }
+
+    List<CourseWithLessons> courses = courseService.getAllCourses();
     return buildSuccessApiResponse(message, courses, HttpStatus.OK, apiVersion, request);
   }
 
+  @GetMapping(params = "format=ndjson")
+  public ResponseEntity<StreamingResponseBody> streamAllCourses() {
+    return ndjsonResponses.stream(courseService::streamAllCourses);
+  }
+
+  @GetMapping(params = "size")
+  public ResponseEntity<ApiResponse<KeysetPage<CourseWithLessons>>> getCoursesPage(
+      @RequestParam int size,
+      @RequestParam(defaultValue = "id") String sort,
+      @RequestParam(required = false) String prefix,
+      @RequestParam(required = false) String cursor,
+      WebRequest webRequest,
+      HttpServletRequest request) {
+
+    if (webRequest.checkNotModified(versions.etag(EntityVersions.COURSES, EntityVersions.LESSONS))) {
+      return null;
+    }
+
+    KeysetPage<CourseWithLessons> page = courseService.getCoursesPage(PageQuery.of(sort, prefix, cursor, size));
+    final String message = SuccessMessage.GET_ALL_ENTITIES.getMessage("Courses");
+    return buildSuccessApiResponse(message, page, HttpStatus.OK, apiVersion, request);
+  }
+
   @PostMapping
   public ResponseEntity<ApiResponse<Void>> createCourse(
       @Validated @RequestBody CourseRequest courseRequest,
@@ -57,8 +129,13 @@ public class CourseController {
   @GetMapping("/{courseName}")
   public ResponseEntity<ApiResponse<CourseWithLessons>> getSingleCourse(
       @PathVariable String courseName,
+      WebRequest webRequest,
       HttpServletRequest request) {
 
+    if (webRequest.checkNotModified(versions.etag(EntityVersions.course(courseName), EntityVersions.LESSONS))) {
+      return null;
+    }
+
     CourseWithLessons course = courseService.getCourseWithLessonsByName(courseName);
     final String message = SuccessMessage.GET_SINGLE_ENTITY.getMessage("Course");
     return buildSuccessApiResponse(message, course, HttpStatus.OK, apiVersion, request);
@@ -83,21 +160,40 @@ public class CourseController {
   }
 
   @PostMapping("/{courseName}")
-  public ResponseEntity<ApiResponse<Void>> uploadCoursePic(
+  public ResponseEntity<ApiResponse<CoursePicUpload>> uploadCoursePic(
       @PathVariable String courseName,
       @RequestParam(name = "file") MultipartFile file,
       HttpServletRequest request) {
 
-    courseService.uploadCoursePic(courseName, file);
-    final String message = SuccessMessage.UPDATE_ENTITY.getMessage("Course");
-    return buildSuccessApiResponse(message, null, HttpStatus.OK, apiVersion, request);
+    CoursePicUpload upload = picUploads.submit(courseName, file);
+    final String message = SuccessMessage.COURSE_PIC_UPLOAD_ACCEPTED.getMessage();
+    ApiResponse<CoursePicUpload> body = buildSuccessApiResponse(message, upload, HttpStatus.ACCEPTED, apiVersion, request).getBody();
+    return ResponseEntity.accepted()
+        .location(URI.create(request.getRequestURI() + "/pic-uploads/" + upload.id()))
+        .body(body);
+  }
+
+  @GetMapping("/{courseName}/pic-uploads/{jobId}")
+  public ResponseEntity<ApiResponse<CoursePicUpload>> getCoursePicUpload(
+      @PathVariable String courseName,
+      @PathVariable UUID jobId,
+      HttpServletRequest request) {
+
+    CoursePicUpload upload = picUploads.find(courseName, jobId);
+    final String message = SuccessMessage.GET_SINGLE_ENTITY.getMessage("Picture upload");
+    return buildSuccessApiResponse(message, upload, HttpStatus.OK, apiVersion, request);
   }
 
   @GetMapping("/{courseName}/lessons")
   public ResponseEntity<ApiResponse<List<LessonWithoutContent>>> getAllLessonsForCourse(
       @PathVariable String courseName,
+      WebRequest webRequest,
       HttpServletRequest request) {
 
+    if (webRequest.checkNotModified(versions.etag(EntityVersions.course(courseName), EntityVersions.LESSONS))) {
+      return null;
+    }
+
     List<LessonWithoutContent> lessons = courseService.getAllLessonsForCourse(courseName);
     return buildSuccessApiResponse(SuccessMessage.GET_ALL_ENTITIES.getMessage("Lessons"), lessons, HttpStatus.OK, apiVersion, request);
   }
@@ -128,7 +224,8 @@ public class CourseController {
       HttpServletRequest request) {
 
     Long userId = getUserIdFromBearer(bearer);
-    List<LessonsWithCompletion> lessons = courseService.getAllLessonsWithCompletionStatusForCourse(userId, courseName);
+    List<LessonsWithCompletion> lessons = completions.merge(
+        userId, courseService.getAllLessonsWithCompletionStatusForCourse(userId, courseName));
     final String message = SuccessMessage.GET_ALL_ENTITIES.getMessage("Lessons");
     return buildSuccessApiResponse(message, lessons, HttpStatus.OK, apiVersion, request);
   }
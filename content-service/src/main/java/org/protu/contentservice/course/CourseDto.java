@@ -1,4 +1,4 @@
 package org.protu.contentservice.course;
 
-public record CourseDto(Integer id, String name, String description, String picUrl) {
+public record CourseDto(Integer id, String name, String description, String picUrl, Integer lessonCount) {
 }
@@ -0,0 +1,17 @@
+package org.protu.contentservice.course;
+
+import java.io.IOException;
+
+/**
+ * Where course pictures are kept. {@link #store} returns the public URL saved on the course along
+ * with the id {@link #delete} takes to remove a picture no course ended up referencing.
+ */
+public interface CoursePicStorage {
+
+  record StoredPic(String url, String assetId) {
+  }
+
+  StoredPic store(String courseName, String filename, byte[] content) throws IOException;
+
+  void delete(String assetId) throws IOException;
+}
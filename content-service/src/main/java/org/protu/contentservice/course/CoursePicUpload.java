@@ -0,0 +1,24 @@
+package org.protu.contentservice.course;
+
+import java.util.UUID;
+
+public record CoursePicUpload(UUID id, String courseName, Status status, String picUrl, String error) {
+
+  public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+  static CoursePicUpload queued(UUID id, String courseName) {
+    return new CoursePicUpload(id, courseName, Status.QUEUED, null, null);
+  }
+
+  CoursePicUpload running() {
+    return new CoursePicUpload(id, courseName, Status.RUNNING, null, null);
+  }
+
+  CoursePicUpload succeeded(String url) {
+    return new CoursePicUpload(id, courseName, Status.SUCCEEDED, url, null);
+  }
+
+  CoursePicUpload failed(String message) {
+    return new CoursePicUpload(id, courseName, Status.FAILED, null, message);
+  }
+}
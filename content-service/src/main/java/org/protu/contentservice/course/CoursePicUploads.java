@@ -0,0 +1,155 @@
+package org.protu.contentservice.course;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.common.exception.custom.UploadQueueFullException;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Uploads course pictures off the request thread.
+ * <p>
+ * {@link #submit} reads the multipart part into memory, as the request (and with it the part) ends
+ * before the upload runs, and queues a job on a bounded pool of {@code workers}. Once
+ * {@code queue-capacity} jobs are waiting, new uploads are refused, which also bounds the memory
+ * held by queued pictures. A job stores the picture through {@link CoursePicStorage} and then saves
+ * its URL with {@link CourseService#saveCoursePic}; when the course is gone by then, the stored
+ * picture is deleted again.
+ * <p>
+ * Job states are kept in Redis for {@code job-ttl}, so any instance can answer a status poll.
+ */
+@Component
+public class CoursePicUploads implements DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(CoursePicUploads.class);
+  private static final String KEY_PREFIX = "course-pic-upload::";
+
+  private final CourseService courseService;
+  private final CoursePicStorage storage;
+  private final StringRedisTemplate redis;
+  private final ObjectMapper objectMapper;
+  private final ThreadPoolTaskExecutor workers;
+  private final Duration jobTtl;
+
+  public CoursePicUploads(
+      CourseService courseService,
+      CoursePicStorage storage,
+      StringRedisTemplate redis,
+      ObjectMapper objectMapper,
+      AppProperties props) {
+
+    this.courseService = courseService;
+    this.storage = storage;
+    this.redis = redis;
+    this.objectMapper = objectMapper;
+    AppProperties.PicUploads config = props.picUploads();
+    this.workers = startWorkers(config);
+    this.jobTtl = config.jobTtl();
+  }
+
+  private static ThreadPoolTaskExecutor startWorkers(AppProperties.PicUploads config) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(config.workers());
+    executor.setMaxPoolSize(config.workers());
+    executor.setQueueCapacity(config.queueCapacity());
+    executor.setThreadNamePrefix("course-pic-upload-");
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    executor.initialize();
+    return executor;
+  }
+
+  public CoursePicUpload submit(String courseName, MultipartFile file) {
+    courseService.getCourseByNameOrThrow(courseName);
+
+    byte[] content;
+    try {
+      content = file.getBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    CoursePicUpload job = CoursePicUpload.queued(UUID.randomUUID(), courseName);
+    save(job);
+    try {
+      workers.execute(() -> run(job, file.getOriginalFilename(), content));
+    } catch (TaskRejectedException e) {
+      redis.delete(key(job.id()));
+      throw new UploadQueueFullException();
+    }
+    return job;
+  }
+
+  public CoursePicUpload find(String courseName, UUID jobId) {
+    String stored = redis.opsForValue().get(key(jobId));
+    CoursePicUpload job = stored == null ? null : read(stored);
+    if (job == null || !job.courseName().equals(courseName)) {
+      throw new EntityNotFoundException("Picture upload", jobId.toString());
+    }
+    return job;
+  }
+
+  private void run(CoursePicUpload job, String filename, byte[] content) {
+    try {
+      save(job.running());
+      CoursePicStorage.StoredPic pic = storage.store(job.courseName(), filename, content);
+      if (!courseService.saveCoursePic(job.courseName(), pic.url())) {
+        discard(job, pic);
+        save(job.failed("Course " + job.courseName() + " no longer exists"));
+        return;
+      }
+      save(job.succeeded(pic.url()));
+    } catch (Exception e) {
+      log.warn("Picture upload {} for course {} failed", job.id(), job.courseName(), e);
+      save(job.failed(e.getMessage()));
+    }
+  }
+
+  // the course was deleted while the upload was queued, so nothing references the stored picture
+  private void discard(CoursePicUpload job, CoursePicStorage.StoredPic pic) {
+    log.warn("Course {} was deleted before upload {} finished, deleting picture {}", job.courseName(), job.id(), pic.assetId());
+    try {
+      storage.delete(pic.assetId());
+    } catch (Exception e) {
+      log.error("Could not delete orphaned picture {} of upload {}", pic.assetId(), job.id(), e);
+    }
+  }
+
+  private static String key(UUID jobId) {
+    return KEY_PREFIX + jobId;
+  }
+
+  private void save(CoursePicUpload job) {
+    try {
+      redis.opsForValue().set(key(job.id()), objectMapper.writeValueAsString(job), jobTtl);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize picture upload " + job.id(), e);
+    }
+  }
+
+  private CoursePicUpload read(String stored) {
+    try {
+      return objectMapper.readValue(stored, CoursePicUpload.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not read a stored picture upload", e);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    workers.shutdown();
+  }
+}
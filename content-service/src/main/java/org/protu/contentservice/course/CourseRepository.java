@@ -1,14 +1,18 @@
 package org.protu.contentservice.course;
 
 import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.pagination.PageQuery;
+import org.protu.contentservice.common.pagination.PageSort;
 import org.protu.contentservice.lesson.dto.LessonWithoutContent;
 import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 
-import java.sql.ResultSet;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 public class CourseRepository {
@@ -19,6 +23,72 @@ public class CourseRepository {
       rs.getInt("lesson_order")
   );
 
+  // Positional mappers read columns in record component order, so the select lists below must keep
+  // that order. They replace query(Class), which resolves columns to constructor parameters by name
+  // on every call.
+
+  /**
+   * Maps {@code id, name, description, pic_url, lesson_count} onto a {@link CourseDto}.
+   */
+  public static final RowMapper<CourseDto> SUMMARY_MAPPER = (rs, rowNum) -> new CourseDto(
+      rs.getInt(1),
+      rs.getString(2),
+      rs.getString(3),
+      rs.getString(4),
+      rs.getInt(5)
+  );
+
+  private static final RowMapper<LessonWithoutContent> LESSON_ROW_MAPPER = (rs, rowNum) -> new LessonWithoutContent(
+      rs.getInt(1),
+      rs.getString(2),
+      rs.getObject(3, Integer.class)
+  );
+
+  private static final RowMapper<LessonsWithCompletion> LESSON_COMPLETION_MAPPER = (rs, rowNum) -> new LessonsWithCompletion(
+      rs.getInt(1),
+      rs.getString(2),
+      rs.getObject(3, Integer.class),
+      rs.getObject(4, Boolean.class)
+  );
+
+  private static final String FIND_ALL_SQL = """
+      SELECT
+        c.id AS course_id,
+        c.name AS course_name,
+        c.description AS course_desc,
+        c.pic_url AS course_pic,
+        l.id AS lesson_id,
+        l.name AS lesson_name,
+        l.lesson_order AS lesson_order
+      FROM courses c
+      LEFT JOIN courses_lessons cl ON cl.course_id = c.id
+      LEFT JOIN lessons l ON l.id = cl.lesson_id
+      ORDER BY c.id, l.lesson_order
+      """;
+
+  private static final int STREAM_CHUNK_SIZE = PageQuery.MAX_SIZE;
+
+  private static final ResultSetExtractor<List<CourseWithLessons>> COURSES_WITH_LESSONS = rs -> {
+    Map<Integer, CourseWithLessons> map = new LinkedHashMap<>();
+
+    while (rs.next()) {
+      int courseId = rs.getInt("course_id");
+      String name = rs.getString("course_name");
+      String description = rs.getString("course_desc");
+      String picUrl = rs.getString("course_pic");
+
+      map.computeIfAbsent(courseId, id -> new CourseWithLessons(id, name, description, picUrl, new ArrayList<>()));
+
+      Integer lessonId = rs.getObject("lesson_id", Integer.class);
+      if (lessonId != null) {
+        LessonWithoutContent lesson = LESSON_MAPPER.mapRow(rs, 0);
+        map.get(courseId).lessons().add(lesson);
+      }
+    }
+
+    return new ArrayList<>(map.values());
+  };
+
   private final JdbcClient jdbcClient;
 
   public CourseRepository(JdbcClient jdbcClient) {
@@ -56,26 +126,7 @@ public class CourseRepository {
 
     List<CourseWithLessons> results = jdbcClient.sql(sql)
         .param("name", courseName)
-        .query((ResultSet rs) -> {
-          Map<Integer, CourseWithLessons> map = new LinkedHashMap<>();
-
-          while (rs.next()) {
-            int courseId = rs.getInt("course_id");
-            String name = rs.getString("course_name");
-            String description = rs.getString("course_desc");
-            String picUrl = rs.getString("course_pic");
-
-            map.computeIfAbsent(courseId, id -> new CourseWithLessons(id, name, description, picUrl, new ArrayList<>()));
-
-            Integer lessonId = rs.getObject("lesson_id", Integer.class);
-            if (lessonId != null) {
-              LessonWithoutContent lesson = LESSON_MAPPER.mapRow(rs, 0);
-              map.get(courseId).lessons().add(lesson);
-            }
-          }
-
-          return new ArrayList<>(map.values());
-        });
+        .query(COURSES_WITH_LESSONS);
 
     return results.stream().findFirst();
   }
@@ -86,12 +137,13 @@ public class CourseRepository {
               c.id,
               c.name,
               c.description,
-              c.pic_url
+              c.pic_url,
+              c.lesson_count
             FROM courses c
             WHERE c.name = :name
             """)
         .param("name", courseName)
-        .query(CourseDto.class)
+        .query(SUMMARY_MAPPER)
         .optional()
         .orElseThrow(() -> new EntityNotFoundException("Course", courseName));
   }
@@ -109,7 +161,33 @@ public class CourseRepository {
   }
 
   public List<CourseWithLessons> findAll() {
+    return jdbcClient.sql(FIND_ALL_SQL)
+        .query(COURSES_WITH_LESSONS);
+  }
+
+  /**
+   * Hands each course to {@code sink} in id order, reading {@value #STREAM_CHUNK_SIZE} courses per
+   * keyset-paged statement. No connection is held while {@code sink} runs, so a slow consumer only
+   * delays the next chunk; the listing is not a single snapshot across chunks.
+   */
+  public void streamAll(Consumer<CourseWithLessons> sink) {
+    String cursor = null;
+    do {
+      KeysetPage<CourseWithLessons> page = findPage(new PageQuery(PageSort.ID, null, cursor, STREAM_CHUNK_SIZE));
+      page.items().forEach(sink);
+      cursor = page.nextCursor();
+    } while (cursor != null);
+  }
+
+  public KeysetPage<CourseWithLessons> findPage(PageQuery query) {
     String sql = """
+            WITH page AS (
+              SELECT id, name, description, pic_url
+              FROM courses
+              WHERE %s
+              ORDER BY %s
+              LIMIT :limit
+            )
             SELECT
               c.id AS course_id,
               c.name AS course_name,
@@ -118,38 +196,27 @@ public class CourseRepository {
               l.id AS lesson_id,
               l.name AS lesson_name,
               l.lesson_order AS lesson_order
-            FROM courses c
+            FROM page c
             LEFT JOIN courses_lessons cl ON cl.course_id = c.id
             LEFT JOIN lessons l ON l.id = cl.lesson_id
-            ORDER BY c.id, l.lesson_order
-        """;
-
-    return jdbcClient.sql(sql)
-        .query((ResultSet rs) -> {
-          Map<Integer, CourseWithLessons> map = new LinkedHashMap<>();
-
-          while (rs.next()) {
-            int courseId = rs.getInt("course_id");
-            String name = rs.getString("course_name");
-            String description = rs.getString("course_desc");
-            String picUrl = rs.getString("course_pic");
+            ORDER BY c.%s, l.lesson_order
+        """.formatted(query.whereClause(), query.sort().column(), query.sort().column());
 
-            map.computeIfAbsent(courseId, id -> new CourseWithLessons(id, name, description, picUrl, new ArrayList<>()));
+    JdbcClient.StatementSpec statement = jdbcClient.sql(sql).param("limit", query.size() + 1);
+    if (query.prefix() != null) {
+      statement = statement.param("prefix", query.likePattern());
+    }
+    if (query.cursor() != null) {
+      statement = statement.param("after", query.after());
+    }
 
-            Integer lessonId = rs.getObject("lesson_id", Integer.class);
-            if (lessonId != null) {
-              LessonWithoutContent lesson = LESSON_MAPPER.mapRow(rs, 0);
-              map.get(courseId).lessons().add(lesson);
-            }
-          }
-
-          return new ArrayList<>(map.values());
-        });
+    List<CourseWithLessons> rows = statement.query(COURSES_WITH_LESSONS);
+    return KeysetPage.of(rows, query.size(), course -> query.sort().cursorOf(course.id(), course.name()));
   }
 
 
-  public void updateCoursePicture(String courseName, String secureAssetUrl) {
-    jdbcClient.sql("UPDATE courses SET pic_url = :url WHERE name = :name")
+  public int updateCoursePicture(String courseName, String secureAssetUrl) {
+    return jdbcClient.sql("UPDATE courses SET pic_url = :url WHERE name = :name")
         .param("url", secureAssetUrl)
         .param("name", courseName)
         .update();
@@ -167,24 +234,44 @@ public class CourseRepository {
             ORDER BY l.lesson_order
             """)
         .param("courseId", courseId)
-        .query(LessonWithoutContent.class)
+        .query(LESSON_ROW_MAPPER)
         .list();
   }
 
-  public void addLessonToCourse(int courseId, int lessonId) {
-    jdbcClient.sql("""
-            INSERT INTO courses_lessons (course_id, lesson_id)
-            VALUES (:courseId, :lessonId)
-            ON CONFLICT (course_id, lesson_id)
-            DO NOTHING
+  /**
+   * Links a lesson to a course and returns 1, or 0 when it was already linked or either id has no row.
+   */
+  public int addLessonToCourse(int courseId, int lessonId) {
+    return jdbcClient.sql("""
+            WITH added AS (
+              INSERT INTO courses_lessons (course_id, lesson_id)
+              SELECT c.id, l.id
+              FROM courses AS c, lessons AS l
+              WHERE c.id = :courseId AND l.id = :lessonId
+              ON CONFLICT (course_id, lesson_id)
+              DO NOTHING
+              RETURNING course_id
+            )
+            UPDATE courses
+            SET lesson_count = lesson_count + 1
+            WHERE id IN (SELECT course_id FROM added)
             """)
         .param("courseId", courseId)
         .param("lessonId", lessonId)
         .update();
   }
 
-  public void deleteLessonFromCourse(int courseId, int lessonId) {
-    jdbcClient.sql("DELETE FROM courses_lessons WHERE course_id = :courseId AND lesson_id = :lessonId")
+  public int deleteLessonFromCourse(int courseId, int lessonId) {
+    return jdbcClient.sql("""
+            WITH removed AS (
+              DELETE FROM courses_lessons
+              WHERE course_id = :courseId AND lesson_id = :lessonId
+              RETURNING course_id
+            )
+            UPDATE courses
+            SET lesson_count = lesson_count - 1
+            WHERE id IN (SELECT course_id FROM removed)
+            """)
         .param("courseId", courseId)
         .param("lessonId", lessonId)
         .update();
@@ -211,7 +298,7 @@ public class CourseRepository {
             """)
         .param("userId", userId)
         .param("courseId", courseId)
-        .query(LessonsWithCompletion.class)
+        .query(LESSON_COMPLETION_MAPPER)
         .list();
   }
 }
\ No newline at end of file
@@ -1,10 +1,10 @@
 package org.protu.contentservice.course;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import org.protu.contentservice.common.etag.EntityVersions;
 import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
-import org.protu.contentservice.common.properties.AppProperties;
-import org.protu.contentservice.lesson.LessonService;
+import org.protu.contentservice.common.index.EntityIdIndex;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.pagination.PageQuery;
 import org.protu.contentservice.lesson.dto.LessonWithoutContent;
 import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
 import org.springframework.cache.annotation.CacheEvict;
@@ -12,34 +12,41 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public class CourseService {
 
   private static final String CACHE_ALL_COURSES_LIST = "all-courses-list";
   private static final String CACHE_COURSE_DETAILS = "course-details";
+  private static final String CACHE_COURSE_SUMMARY = "course-summary";
+  private static final String CACHE_COURSE_PAGES = "course-pages";
   private static final String CACHE_COURSE_LESSONS = "course-lessons";
   private static final String CACHE_COURSE_LESSONS_WITH_COMPLETION = "course-lessons-with-completion";
+  private static final String CACHE_TRACK_COURSES = "track-courses";
+  private static final String CACHE_ALL_TRACKS_LIST = "all-tracks-list";
+  private static final String CACHE_TRACK_DETAILS = "track-details";
+  private static final String CACHE_TRACK_PAGES = "track-pages";
   private final CourseRepository courses;
-  private final LessonService lessonService;
-  private final AppProperties props;
+  private final EntityIdIndex ids;
+  private final EntityVersions versions;
 
-  public CourseService(CourseRepository courses, LessonService lessonService, AppProperties props) {
+  public CourseService(CourseRepository courses, EntityIdIndex ids, EntityVersions versions) {
     this.courses = courses;
-    this.lessonService = lessonService;
-    this.props = props;
+    this.ids = ids;
+    this.versions = versions;
   }
 
   @Transactional
-  @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true)
+  @Caching(evict = {
+      @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_COURSE_PAGES, allEntries = true),
+  })
   public void createCourse(CourseRequest courseRequest) {
     courses.add(courseRequest);
+    versions.bump(EntityVersions.COURSES, EntityVersions.course(courseRequest.name()));
   }
 
   @Transactional(readOnly = true)
@@ -49,7 +56,7 @@ public class CourseService {
   }
 
   @Transactional(readOnly = true)
-  @Cacheable(value = CACHE_COURSE_DETAILS, key = "#courseName", unless = "#result == null")
+  @Cacheable(value = CACHE_COURSE_SUMMARY, key = "#courseName", unless = "#result == null")
   public CourseDto getCourseByNameOrThrow(String courseName) {
     return courses.findByNameOrThrow(courseName);
   }
@@ -57,98 +64,147 @@ public class CourseService {
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_COURSE_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_COURSE_DETAILS, key = "#courseName"),
+      @CacheEvict(value = CACHE_COURSE_SUMMARY, key = "#courseName"),
       @CacheEvict(value = CACHE_COURSE_LESSONS, key = "#courseName"),
+      @CacheEvict(value = CACHE_TRACK_COURSES, allEntries = true),
+      @CacheEvict(value = CACHE_ALL_TRACKS_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_DETAILS, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
   })
   public void updateCourse(String courseName, CourseRequest courseRequest) {
     courses.update(courseName, courseRequest);
+    versions.bump(EntityVersions.COURSES, EntityVersions.course(courseName), EntityVersions.course(courseRequest.name()));
   }
 
   @Transactional(readOnly = true)
-  @Cacheable(value = CACHE_ALL_COURSES_LIST, unless = "#result == null || #result.isEmpty()")
+  @Cacheable(value = CACHE_ALL_COURSES_LIST, sync = true)
   public List<CourseWithLessons> getAllCourses() {
     return courses.findAll();
   }
 
-  @SuppressWarnings("rawtypes")
-  private String uploadToCloudinary(MultipartFile file) {
-    try {
-      File file1 = File.createTempFile("coursePic-", file.getOriginalFilename());
-      file.transferTo(file1);
-      Map uploadMap = ObjectUtils.asMap("asset_folder", "courses-pic");
-      Map uploadResults = new Cloudinary(ObjectUtils.asMap(
-          "cloud_name", props.cloudinary().cloudName(),
-          "api_key", props.cloudinary().apiKey(),
-          "api_secret", props.cloudinary().apiSecret()
-      )).uploader().upload(file1, uploadMap);
-
-      return uploadResults.get("secure_url").toString();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+  // for callers that cache per entity version: skips the listing cache and, not being read-only, the replicas
+  public List<CourseWithLessons> loadAllCourses() {
+    return courses.findAll();
+  }
+
+  // not transactional: the repository pages through the listing so no connection outlives a chunk
+  public void streamAllCourses(Consumer<CourseWithLessons> sink) {
+    courses.streamAll(sink);
+  }
+
+  @Transactional(readOnly = true)
+  @Cacheable(value = CACHE_COURSE_PAGES, key = "#query")
+  public KeysetPage<CourseWithLessons> getCoursesPage(PageQuery query) {
+    return courses.findPage(query);
   }
 
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_COURSE_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_COURSE_DETAILS, key = "#courseName"),
+      @CacheEvict(value = CACHE_COURSE_SUMMARY, key = "#courseName"),
       @CacheEvict(value = CACHE_COURSE_LESSONS, key = "#courseName"),
+      @CacheEvict(value = CACHE_TRACK_COURSES, allEntries = true),
+      @CacheEvict(value = CACHE_ALL_TRACKS_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_DETAILS, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
   })
-  private void saveCoursePic(String courseName, String picUrl) {
-    courses.updateCoursePicture(courseName, picUrl);
-  }
-
-  public void uploadCoursePic(String courseName, MultipartFile file) {
-    courses.findByNameOrThrow(courseName);
-    String secureAssetUrl = uploadToCloudinary(file);
-    saveCoursePic(courseName, secureAssetUrl);
+  public boolean saveCoursePic(String courseName, String picUrl) {
+    if (courses.updateCoursePicture(courseName, picUrl) == 0) {
+      return false;
+    }
+    versions.bump(EntityVersions.COURSES, EntityVersions.course(courseName));
+    return true;
   }
 
   @Transactional(readOnly = true)
   @Cacheable(value = CACHE_COURSE_LESSONS, key = "#courseName", unless = "#result == null || #result.isEmpty()")
   public List<LessonWithoutContent> getAllLessonsForCourse(String courseName) {
-    CourseDto course = courses.findByNameOrThrow(courseName);
-    return courses.findLessonsByCourseId(course.id());
+    int courseId = ids.courseId(courseName);
+    List<LessonWithoutContent> lessons = courses.findLessonsByCourseId(courseId);
+    // nothing found may mean a stale id; re-resolving turns a deleted course into a 404
+    if (lessons.isEmpty() && ids.courseIdChanged(courseName, courseId)) {
+      lessons = courses.findLessonsByCourseId(ids.courseId(courseName));
+    }
+    return lessons;
   }
 
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_COURSE_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_COURSE_DETAILS, key = "#courseName"),
+      @CacheEvict(value = CACHE_COURSE_SUMMARY, key = "#courseName"),
       @CacheEvict(value = CACHE_COURSE_LESSONS, key = "#courseName"),
+      @CacheEvict(value = CACHE_TRACK_COURSES, allEntries = true),
+      @CacheEvict(value = CACHE_ALL_TRACKS_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_DETAILS, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
   })
   public void addExistingLessonToCourse(String courseName, String lessonName) {
-    CourseDto course = courses.findByNameOrThrow(courseName);
-    LessonWithoutContent lesson = lessonService.findByNameWithoutContent(lessonName);
-    courses.addLessonToCourse(course.id(), lesson.id());
+    int courseId = ids.courseId(courseName);
+    int lessonId = ids.lessonId(lessonName);
+    if (courses.addLessonToCourse(courseId, lessonId) == 0 && idsChanged(courseName, courseId, lessonName, lessonId)) {
+      courses.addLessonToCourse(ids.courseId(courseName), ids.lessonId(lessonName));
+    }
+    versions.bump(EntityVersions.COURSES, EntityVersions.course(courseName));
   }
 
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_COURSE_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_COURSE_DETAILS, key = "#courseName"),
+      @CacheEvict(value = CACHE_COURSE_SUMMARY, key = "#courseName"),
       @CacheEvict(value = CACHE_COURSE_LESSONS, key = "#courseName"),
+      @CacheEvict(value = CACHE_TRACK_COURSES, allEntries = true),
+      @CacheEvict(value = CACHE_ALL_TRACKS_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_DETAILS, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
   })
   public void deleteLessonFromCourse(String courseName, String lessonName) {
-    CourseDto course = courses.findByNameOrThrow(courseName);
-    LessonWithoutContent lesson = lessonService.findByNameWithoutContent(lessonName);
-    courses.deleteLessonFromCourse(course.id(), lesson.id());
+    int courseId = ids.courseId(courseName);
+    int lessonId = ids.lessonId(lessonName);
+    if (courses.deleteLessonFromCourse(courseId, lessonId) == 0 && idsChanged(courseName, courseId, lessonName, lessonId)) {
+      courses.deleteLessonFromCourse(ids.courseId(courseName), ids.lessonId(lessonName));
+    }
+    versions.bump(EntityVersions.COURSES, EntityVersions.course(courseName));
   }
 
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_COURSES_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_COURSE_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_COURSE_DETAILS, key = "#courseName"),
+      @CacheEvict(value = CACHE_COURSE_SUMMARY, key = "#courseName"),
       @CacheEvict(value = CACHE_COURSE_LESSONS, key = "#courseName"),
+      @CacheEvict(value = CACHE_TRACK_COURSES, allEntries = true),
+      @CacheEvict(value = CACHE_ALL_TRACKS_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_DETAILS, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
   })
   public void deleteCourse(String courseName) {
     courses.delete(courseName);
+    versions.bump(EntityVersions.COURSES, EntityVersions.course(courseName));
   }
 
   @Transactional(readOnly = true)
   @Cacheable(value = CACHE_COURSE_LESSONS_WITH_COMPLETION, key = "{#userId, #courseName}", unless = "#result == null || #result.isEmpty()")
   public List<LessonsWithCompletion> getAllLessonsWithCompletionStatusForCourse(Long userId, String courseName) {
-    CourseDto course = courses.findByNameOrThrow(courseName);
-    return courses.findLessonsWithCompletionStatus(userId, course.id());
+    int courseId = ids.courseId(courseName);
+    List<LessonsWithCompletion> lessons = courses.findLessonsWithCompletionStatus(userId, courseId);
+    if (lessons.isEmpty() && ids.courseIdChanged(courseName, courseId)) {
+      lessons = courses.findLessonsWithCompletionStatus(userId, ids.courseId(courseName));
+    }
+    return lessons;
+  }
+
+  // a link statement that matched nothing may have used a stale id; both names are re-read
+  private boolean idsChanged(String courseName, int courseId, String lessonName, int lessonId) {
+    boolean courseChanged = ids.courseIdChanged(courseName, courseId);
+    return ids.lessonIdChanged(lessonName, lessonId) || courseChanged;
   }
 }
\ No newline at end of file
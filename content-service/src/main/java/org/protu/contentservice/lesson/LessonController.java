@@ -1,17 +1,24 @@
 package org.protu.contentservice.lesson;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.protu.contentservice.common.enums.SuccessMessage;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.helpers.GzipSplicer;
 import org.protu.contentservice.common.helpers.JwtHelper;
 import org.protu.contentservice.common.properties.AppProperties;
 import org.protu.contentservice.common.response.ApiResponse;
+import org.protu.contentservice.common.response.PrecompressedJsonResponses;
+import org.protu.contentservice.lesson.dto.CompressedLesson;
 import org.protu.contentservice.lesson.dto.LessonRequest;
 import org.protu.contentservice.lesson.dto.LessonUpdateRequest;
 import org.protu.contentservice.lesson.dto.LessonWithContent;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import static org.protu.contentservice.common.response.ApiResponseBuilder.buildSuccessApiResponse;
 
@@ -22,10 +29,20 @@ public class LessonController {
   private final LessonService lessonService;
   private final String apiVersion;
   private final JwtHelper jwtHelper;
+  private final PrecompressedJsonResponses precompressedResponses;
+  private final EntityVersions versions;
+
+  public LessonController(
+      LessonService lessonService,
+      AppProperties props,
+      JwtHelper jwtHelper,
+      PrecompressedJsonResponses precompressedResponses,
+      EntityVersions versions) {
 
-  public LessonController(LessonService lessonService, AppProperties props, JwtHelper jwtHelper) {
     this.lessonService = lessonService;
     this.jwtHelper = jwtHelper;
+    this.precompressedResponses = precompressedResponses;
+    this.versions = versions;
     apiVersion = props.api().version();
   }
 
@@ -45,12 +62,30 @@ public class LessonController {
   }
 
   @GetMapping("/{lessonName}")
-  public ResponseEntity<ApiResponse<LessonWithContent>> getSingleLesson(
+  public ResponseEntity<?> getSingleLesson(
       @PathVariable String lessonName,
-      HttpServletRequest request) {
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+      WebRequest webRequest,
+      HttpServletRequest request,
+      HttpServletResponse response) {
+
+    // the representation, and so the ETag, depends on Accept-Encoding on every path, 304 included
+    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    boolean gzip = GzipSplicer.acceptsGzip(acceptEncoding);
+    String etag = versions.etag(EntityVersions.lesson(lessonName));
+    if (webRequest.checkNotModified(gzip ? EntityVersions.variant(etag, "gzip") : etag)) {
+      return null;
+    }
 
-    LessonWithContent lesson = lessonService.findByName(lessonName);
     final String message = SuccessMessage.GET_SINGLE_ENTITY.getMessage("Lesson");
+    if (gzip) {
+      CompressedLesson lesson = lessonService.findCompressedByName(lessonName);
+      var envelope = buildSuccessApiResponse(
+          message, lesson.withContent(PrecompressedJsonResponses.PLACEHOLDER), HttpStatus.OK, apiVersion, request);
+      return precompressedResponses.gzip(envelope, lesson.contentGzip());
+    }
+
+    LessonWithContent lesson = lessonService.findByName(lessonName);
     return buildSuccessApiResponse(message, lesson, HttpStatus.OK, apiVersion, request);
   }
 
@@ -1,32 +1,65 @@
 package org.protu.contentservice.lesson;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.protu.contentservice.common.helpers.GzipSplicer;
+import org.protu.contentservice.lesson.dto.CompressedLesson;
 import org.protu.contentservice.lesson.dto.LessonRequest;
 import org.protu.contentservice.lesson.dto.LessonUpdateRequest;
 import org.protu.contentservice.lesson.dto.LessonWithContent;
 import org.protu.contentservice.lesson.dto.LessonWithoutContent;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 @Repository
 public class LessonRepository {
 
+  // positional: the select lists below keep record component order
+  private static final RowMapper<LessonWithContent> LESSON_WITH_CONTENT_MAPPER = (rs, rowNum) -> new LessonWithContent(
+      rs.getInt(1),
+      rs.getString(2),
+      rs.getString(3),
+      rs.getObject(4, Integer.class)
+  );
+
+  private static final RowMapper<LessonWithoutContent> LESSON_WITHOUT_CONTENT_MAPPER = (rs, rowNum) -> new LessonWithoutContent(
+      rs.getInt(1),
+      rs.getString(2),
+      rs.getObject(3, Integer.class)
+  );
+
   private final JdbcClient jdbcClient;
 
   public LessonRepository(JdbcClient jdbcClient) {
     this.jdbcClient = jdbcClient;
   }
 
+  static byte[] compressContent(String content) {
+    if (content == null) {
+      return GzipSplicer.compress("null".getBytes(StandardCharsets.UTF_8));
+    }
+
+    ByteArrayOutputStream json = new ByteArrayOutputStream(content.length() + 2);
+    json.write('"');
+    json.writeBytes(JsonStringEncoder.getInstance().quoteAsUTF8(content));
+    json.write('"');
+    return GzipSplicer.compress(json.toByteArray());
+  }
+
   public void add(LessonRequest lessonRequest) {
     jdbcClient.sql("""
-            INSERT INTO lessons (name, content, lesson_order)
-            VALUES (:name, :content, :lessonOrder)
+            INSERT INTO lessons (name, content, content_gzip, lesson_order)
+            VALUES (:name, :content, :contentGzip, :lessonOrder)
             ON CONFLICT (name)
             DO NOTHING
             """)
         .param("name", lessonRequest.name())
         .param("content", lessonRequest.content())
+        .param("contentGzip", compressContent(lessonRequest.content()))
         .param("lessonOrder", lessonRequest.lessonOrder())
         .update();
   }
@@ -38,7 +71,33 @@ public class LessonRepository {
             WHERE name = :name
             """)
         .param("name", lessonName)
-        .query(LessonWithContent.class)
+        .query(LESSON_WITH_CONTENT_MAPPER)
+        .optional();
+  }
+
+  public Optional<CompressedLesson> findCompressedByName(String lessonName) {
+    return jdbcClient.sql("""
+            SELECT
+              id,
+              name,
+              lesson_order,
+              content_gzip,
+              CASE WHEN content_gzip IS NULL THEN content END AS content
+            FROM lessons
+            WHERE name = :name
+            """)
+        .param("name", lessonName)
+        .query((rs, rowNum) -> {
+          byte[] contentGzip = rs.getBytes(4);
+          if (contentGzip == null) {
+            contentGzip = compressContent(rs.getString(5));
+          }
+          return new CompressedLesson(
+              rs.getInt(1),
+              rs.getString(2),
+              rs.getObject(3, Integer.class),
+              contentGzip);
+        })
         .optional();
   }
 
@@ -49,25 +108,37 @@ public class LessonRepository {
             WHERE name = :name
             """)
         .param("name", lessonName)
-        .query(LessonWithoutContent.class)
+        .query(LESSON_WITHOUT_CONTENT_MAPPER)
         .optional();
   }
 
   public void update(String lessonName, LessonUpdateRequest lessonRequest) {
     jdbcClient.sql("""
             UPDATE lessons
-            SET name = :newName, content = :content, lesson_order = :lessonOrder
+            SET name = :newName, content = :content, content_gzip = :contentGzip, lesson_order = :lessonOrder
             WHERE name = :name
             """)
         .param("newName", lessonRequest.name())
         .param("content", lessonRequest.content())
+        .param("contentGzip", compressContent(lessonRequest.content()))
         .param("lessonOrder", lessonRequest.lessonOrder())
         .param("name", lessonName)
         .update();
   }
 
   public void delete(String lessonName) {
-    jdbcClient.sql("DELETE FROM lessons WHERE name = :lessonName")
+    // courses_lessons rows go with the lesson through ON DELETE CASCADE, so release their counts here
+    jdbcClient.sql("""
+            WITH removed AS (
+              DELETE FROM lessons
+              WHERE name = :lessonName
+              RETURNING id
+            )
+            UPDATE courses AS c
+            SET lesson_count = c.lesson_count - 1
+            FROM courses_lessons AS cl
+            WHERE cl.course_id = c.id AND cl.lesson_id IN (SELECT id FROM removed)
+            """)
         .param("lessonName", lessonName)
         .update();
   }
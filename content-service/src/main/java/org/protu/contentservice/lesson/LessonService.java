@@ -1,30 +1,59 @@
 package org.protu.contentservice.lesson;
 
+import org.protu.contentservice.common.etag.EntityVersions;
 import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.lesson.dto.CompressedLesson;
 import org.protu.contentservice.lesson.dto.LessonRequest;
 import org.protu.contentservice.lesson.dto.LessonUpdateRequest;
 import org.protu.contentservice.lesson.dto.LessonWithContent;
 import org.protu.contentservice.lesson.dto.LessonWithoutContent;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.stream.Stream;
+
 @Service
 public class LessonService {
 
   private static final String CACHE_LESSON_WITH_CONTENT = "lesson-with-content";
   private static final String CACHE_LESSON_WITHOUT_CONTENT = "lesson-without-content";
+  private static final String CACHE_LESSON_GZIP = "lesson-gzip";
+  private static final String CACHE_ALL_COURSES_LIST = "all-courses-list";
+  private static final String CACHE_COURSE_DETAILS = "course-details";
+  private static final String CACHE_COURSE_LESSONS = "course-lessons";
+  private static final String CACHE_COURSE_PAGES = "course-pages";
+  private static final String CACHE_COURSE_SUMMARY = "course-summary";
+  private static final String CACHE_TRACK_COURSES = "track-courses";
+  private static final String CACHE_ALL_TRACKS_LIST = "all-tracks-list";
+  private static final String CACHE_TRACK_DETAILS = "track-details";
+  private static final String CACHE_TRACK_PAGES = "track-pages";
+  private static final List<String> LESSON_CACHES =
+      List.of(CACHE_LESSON_WITH_CONTENT, CACHE_LESSON_WITHOUT_CONTENT, CACHE_LESSON_GZIP);
+  // course responses embed lesson names and order; summaries and track responses embed lesson counts
+  private static final List<String> COURSE_CACHES =
+      List.of(CACHE_ALL_COURSES_LIST, CACHE_COURSE_DETAILS, CACHE_COURSE_LESSONS, CACHE_COURSE_PAGES);
+  private static final List<String> LESSON_COUNT_CACHES =
+      List.of(CACHE_COURSE_SUMMARY, CACHE_TRACK_COURSES, CACHE_ALL_TRACKS_LIST, CACHE_TRACK_DETAILS, CACHE_TRACK_PAGES);
+  private static final List<String> DELETED_LESSON_CACHES =
+      Stream.concat(COURSE_CACHES.stream(), LESSON_COUNT_CACHES.stream()).toList();
   private final LessonRepository lessons;
+  private final EntityVersions versions;
+  private final CacheManager cacheManager;
 
-  public LessonService(LessonRepository lessons) {
+  public LessonService(LessonRepository lessons, EntityVersions versions, CacheManager cacheManager) {
     this.lessons = lessons;
+    this.versions = versions;
+    this.cacheManager = cacheManager;
   }
 
   @Transactional
   public void createLesson(LessonRequest lessonRequest) {
     lessons.add(lessonRequest);
+    versions.bump(EntityVersions.LESSONS, EntityVersions.lesson(lessonRequest.name()));
   }
 
   @Transactional(readOnly = true)
@@ -34,6 +63,13 @@ public class LessonService {
         .orElseThrow(() -> new EntityNotFoundException("Lesson", lessonName));
   }
 
+  @Transactional(readOnly = true)
+  @Cacheable(value = CACHE_LESSON_GZIP, key = "#lessonName", unless = "#result == null")
+  public CompressedLesson findCompressedByName(String lessonName) {
+    return lessons.findCompressedByName(lessonName)
+        .orElseThrow(() -> new EntityNotFoundException("Lesson", lessonName));
+  }
+
   @Transactional(readOnly = true)
   @Cacheable(value = CACHE_LESSON_WITHOUT_CONTENT, key = "#lessonName", unless = "#result == null")
   public LessonWithoutContent findByNameWithoutContent(String lessonName) {
@@ -42,20 +78,34 @@ public class LessonService {
   }
 
   @Transactional
-  @Caching(evict = {
-      @CacheEvict(value = CACHE_LESSON_WITH_CONTENT, key = "#lessonName"),
-      @CacheEvict(value = CACHE_LESSON_WITHOUT_CONTENT, key = "#lessonName")
-  })
   public void updateLesson(String lessonName, LessonUpdateRequest lessonRequest) {
     lessons.update(lessonName, lessonRequest);
+    evict(lessonName, COURSE_CACHES);
+    versions.bump(EntityVersions.LESSONS, EntityVersions.lesson(lessonName),
+        lessonRequest.name() != null ? EntityVersions.lesson(lessonRequest.name()) : null);
   }
 
   @Transactional
-  @Caching(evict = {
-      @CacheEvict(value = CACHE_LESSON_WITH_CONTENT, key = "#lessonName"),
-      @CacheEvict(value = CACHE_LESSON_WITHOUT_CONTENT, key = "#lessonName")
-  })
   public void deleteLesson(String lessonName) {
     lessons.delete(lessonName);
+    evict(lessonName, DELETED_LESSON_CACHES);
+    versions.bump(EntityVersions.LESSONS, EntityVersions.COURSES, EntityVersions.lesson(lessonName));
+  }
+
+  // evicted here rather than by annotations: inside the transaction they are queued ahead of the
+  // version bump, so a new ETag is never served with a body cached before the change
+  private void evict(String lessonName, List<String> sharedCaches) {
+    for (String cacheName : LESSON_CACHES) {
+      Cache cache = cacheManager.getCache(cacheName);
+      if (cache != null) {
+        cache.evict(lessonName);
+      }
+    }
+    for (String cacheName : sharedCaches) {
+      Cache cache = cacheManager.getCache(cacheName);
+      if (cache != null) {
+        cache.clear();
+      }
+    }
   }
 }
@@ -0,0 +1,8 @@
+package org.protu.contentservice.lesson.dto;
+
+public record CompressedLesson(Integer id, String name, Integer lessonOrder, byte[] contentGzip) {
+
+  public LessonWithContent withContent(String content) {
+    return new LessonWithContent(id, name, content, lessonOrder);
+  }
+}
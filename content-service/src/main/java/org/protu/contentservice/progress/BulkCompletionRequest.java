@@ -0,0 +1,13 @@
+package org.protu.contentservice.progress;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkCompletionRequest(
+    @NotEmpty(message = "At least one completion is required")
+    @Size(max = 200, message = "At most 200 completions can be applied at once")
+    List<@Valid LessonCompletionRequest> completions) {
+}
@@ -0,0 +1,6 @@
+package org.protu.contentservice.progress;
+
+import java.util.List;
+
+public record BulkCompletionResult(List<LessonCompletionResult> results, List<UserCourseProgress> progress) {
+}
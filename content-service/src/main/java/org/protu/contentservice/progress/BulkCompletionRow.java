@@ -0,0 +1,18 @@
+package org.protu.contentservice.progress;
+
+/**
+ * Per-entry outcome of {@link ProgressRepository#bulkApplyCompletions}; {@code ord} is the 1-based
+ * position of the entry in the input list.
+ */
+public record BulkCompletionRow(
+    int ord,
+    boolean userExists,
+    Integer courseId,
+    boolean courseExists,
+    Integer lessonId,
+    boolean enrolled,
+    boolean inCourse,
+    boolean changed,
+    Integer completedLessons,
+    Integer totalLessons) {
+}
@@ -0,0 +1,244 @@
+package org.protu.contentservice.progress;
+
+import org.protu.contentservice.common.datasource.RecentWriters;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in write-behind buffer for lesson completions.
+ * <p>
+ * Only the latest requested state per user and lesson is kept, so a complete/uncomplete pair made
+ * between flushes collapses into one entry. A flush applies the buffer with
+ * {@link ProgressRepository#applyCompletions} every {@code flush-interval}, or as soon as
+ * {@code batch-size} entries are waiting. When the buffer is full, {@link #offer} refuses new keys
+ * and the caller writes synchronously instead.
+ * <p>
+ * Entries stay buffered until their batch commits, so readers can overlay them through
+ * {@link #pending(Long, Integer)} and see their own writes; they are indexed by user, so those reads
+ * only touch the caller's entries. A batch the database rejects as a whole (an integrity violation,
+ * say for a lesson deleted meanwhile) is split until the offending entries are isolated and dropped;
+ * any other failure keeps the batch for the next run.
+ */
+@Component
+public class CompletionBuffer implements DisposableBean {
+
+  private static final Logger log = LoggerFactory.getLogger(CompletionBuffer.class);
+  private static final String CACHE_COURSE_LESSONS_WITH_COMPLETION = "course-lessons-with-completion";
+  private static final String CACHE_PROGRESS_DASHBOARD = "progress-dashboard";
+
+  private final ProgressRepository progressRepo;
+  private final TransactionTemplate transactionTemplate;
+  private final CacheManager cacheManager;
+  private final ObjectProvider<RecentWriters> recentWriters;
+  private final AppProperties.Progress.WriteBehind props;
+  // user id -> lesson id -> latest requested state; inner maps are only changed inside compute on the outer one
+  private final ConcurrentMap<Long, ConcurrentMap<Integer, PendingCompletion>> pending = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final ThreadPoolTaskScheduler flusher;
+
+  public CompletionBuffer(
+      ProgressRepository progressRepo,
+      PlatformTransactionManager transactionManager,
+      CacheManager cacheManager,
+      ObjectProvider<RecentWriters> recentWriters,
+      AppProperties props) {
+
+    this.progressRepo = progressRepo;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.cacheManager = cacheManager;
+    this.recentWriters = recentWriters;
+    this.props = props.progress().writeBehind();
+    this.flusher = this.props.enabled() ? startFlusher() : null;
+  }
+
+  private ThreadPoolTaskScheduler startFlusher() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setPoolSize(1);
+    scheduler.setThreadNamePrefix("completion-flush-");
+    scheduler.initialize();
+    scheduler.scheduleWithFixedDelay(this::flush, Instant.now().plus(props.flushInterval()), props.flushInterval());
+    return scheduler;
+  }
+
+  public boolean isEnabled() {
+    return props.enabled();
+  }
+
+  /**
+   * Buffers the completion, replacing any earlier entry for the same user and lesson.
+   *
+   * @return {@code false} when the buffer is full and the completion must be written directly
+   */
+  public boolean offer(PendingCompletion completion) {
+    AtomicBoolean accepted = new AtomicBoolean(true);
+    pending.compute(completion.userId(), (userId, lessons) -> {
+      ConcurrentMap<Integer, PendingCompletion> userLessons = lessons != null ? lessons : new ConcurrentHashMap<>();
+      if (!userLessons.containsKey(completion.lessonId()) && size.incrementAndGet() > props.capacity()) {
+        size.decrementAndGet();
+        accepted.set(false);
+        return lessons;
+      }
+      userLessons.put(completion.lessonId(), completion);
+      return userLessons;
+    });
+
+    if (accepted.get() && size.get() >= props.batchSize() && flushRequested.compareAndSet(false, true)) {
+      flusher.execute(this::flush);
+    }
+    return accepted.get();
+  }
+
+  public List<PendingCompletion> pending(Long userId, Integer courseId) {
+    return pending(userId).stream()
+        .filter(completion -> completion.courseId().equals(courseId))
+        .toList();
+  }
+
+  public List<PendingCompletion> pending(Long userId) {
+    Map<Integer, PendingCompletion> lessons = pending.get(userId);
+    return lessons == null ? List.of() : List.copyOf(lessons.values());
+  }
+
+  public List<LessonsWithCompletion> merge(Long userId, List<LessonsWithCompletion> lessons) {
+    Map<Integer, PendingCompletion> unflushed = pending.get(userId);
+    if (unflushed == null) {
+      return lessons;
+    }
+
+    return lessons.stream()
+        .map(lesson -> {
+          PendingCompletion completion = unflushed.get(lesson.id());
+          return completion == null || completion.completed() == lesson.isCompleted()
+              ? lesson
+              : new LessonsWithCompletion(lesson.id(), lesson.name(), lesson.lessonOrder(), completion.completed());
+        })
+        .toList();
+  }
+
+  /**
+   * Drops buffered entries that a direct write is about to supersede. Runs under the flush lock, so
+   * a batch already in flight commits before the direct write.
+   */
+  public synchronized void discard(Long userId, Collection<Integer> lessonIds) {
+    pending.computeIfPresent(userId, (key, lessons) -> {
+      for (Integer lessonId : lessonIds) {
+        if (lessons.remove(lessonId) != null) {
+          size.decrementAndGet();
+        }
+      }
+      return lessons.isEmpty() ? null : lessons;
+    });
+  }
+
+  // drops the entry unless a newer request for the same user and lesson replaced it
+  private void remove(PendingCompletion completion) {
+    pending.computeIfPresent(completion.userId(), (key, lessons) -> {
+      if (lessons.remove(completion.lessonId(), completion)) {
+        size.decrementAndGet();
+      }
+      return lessons.isEmpty() ? null : lessons;
+    });
+  }
+
+  synchronized void flush() {
+    flushRequested.set(false);
+    if (size.get() == 0) {
+      return;
+    }
+
+    List<PendingCompletion> batch = new ArrayList<>(Math.min(size.get(), props.batchSize()));
+    collect:
+    for (Map<Integer, PendingCompletion> lessons : pending.values()) {
+      for (PendingCompletion completion : lessons.values()) {
+        batch.add(completion);
+        if (batch.size() == props.batchSize()) {
+          break collect;
+        }
+      }
+    }
+
+    if (apply(batch) && size.get() >= props.batchSize() && flushRequested.compareAndSet(false, true)) {
+      flusher.execute(this::flush);
+    }
+  }
+
+  /**
+   * Writes {@code batch} in one transaction. A batch the database rejects is split in halves until
+   * the rejected entries stand alone and are dropped, so one bad entry cannot hold the buffer back.
+   *
+   * @return {@code false} when the batch failed for another reason and stays buffered
+   */
+  private boolean apply(List<PendingCompletion> batch) {
+    try {
+      transactionTemplate.executeWithoutResult(_ -> progressRepo.applyCompletions(batch));
+    } catch (DataIntegrityViolationException e) {
+      if (batch.size() == 1) {
+        log.error("Dropping buffered lesson completion {}, the database rejects it", batch.getFirst(), e);
+        remove(batch.getFirst());
+        return true;
+      }
+      int half = batch.size() / 2;
+      return apply(batch.subList(0, half)) && apply(batch.subList(half, batch.size()));
+    } catch (DataAccessException e) {
+      log.warn("Flushing {} buffered lesson completions failed, retrying on the next run", batch.size(), e);
+      return false;
+    }
+
+    Cache lessonsWithCompletion = cacheManager.getCache(CACHE_COURSE_LESSONS_WITH_COMPLETION);
+    Cache dashboards = cacheManager.getCache(CACHE_PROGRESS_DASHBOARD);
+    RecentWriters writers = recentWriters.getIfAvailable();
+    for (PendingCompletion completion : batch) {
+      // pinned before the overlay goes, so the user's reads never fall between the two
+      if (writers != null) {
+        writers.markWrote(completion.userId());
+      }
+      remove(completion);
+      if (lessonsWithCompletion != null) {
+        lessonsWithCompletion.evict(List.of(completion.userId(), completion.courseName()));
+      }
+      if (dashboards != null) {
+        dashboards.evict(completion.userId());
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void destroy() {
+    if (flusher == null) {
+      return;
+    }
+
+    flusher.shutdown();
+    int attempts = Math.max(1, size.get() / props.batchSize() + 1);
+    for (int i = 0; i < attempts && size.get() > 0; i++) {
+      flush();
+    }
+    if (size.get() > 0) {
+      log.warn("Shutting down with {} unflushed lesson completions", size.get());
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package org.protu.contentservice.progress;
+
+public enum CompletionStatus {
+  UPDATED,
+  UNCHANGED,
+  SUPERSEDED,
+  COURSE_NOT_FOUND,
+  LESSON_NOT_FOUND,
+  LESSON_NOT_IN_COURSE,
+  NOT_ENROLLED
+}
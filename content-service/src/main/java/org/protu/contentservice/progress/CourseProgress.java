@@ -0,0 +1,4 @@
+package org.protu.contentservice.progress;
+
+public record CourseProgress(Integer courseId, String courseName, Integer completedLessons, Integer totalLessons) {
+}
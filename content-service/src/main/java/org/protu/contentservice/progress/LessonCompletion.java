@@ -0,0 +1,14 @@
+package org.protu.contentservice.progress;
+
+/**
+ * Outcome of a single-statement lesson (un)completion: which preconditions held, whether the lesson
+ * state changed, and the course progress after the statement.
+ */
+public record LessonCompletion(
+    boolean userExists,
+    boolean enrolled,
+    boolean inCourse,
+    boolean changed,
+    Integer completedLessons,
+    Integer totalLessons) {
+}
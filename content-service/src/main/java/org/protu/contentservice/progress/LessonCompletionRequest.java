@@ -0,0 +1,15 @@
+package org.protu.contentservice.progress;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+public record LessonCompletionRequest(
+    @NotBlank(message = "Course name is required")
+    String courseName,
+
+    @NotBlank(message = "Lesson name is required")
+    String lessonName,
+
+    @NotNull(message = "completed is required")
+    Boolean completed) {
+}
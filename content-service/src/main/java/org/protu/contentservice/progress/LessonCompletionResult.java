@@ -0,0 +1,4 @@
+package org.protu.contentservice.progress;
+
+public record LessonCompletionResult(String courseName, String lessonName, boolean completed, CompletionStatus status) {
+}
@@ -0,0 +1,4 @@
+package org.protu.contentservice.progress;
+
+public record PendingCompletion(Long userId, Integer courseId, String courseName, Integer lessonId, boolean completed) {
+}
@@ -7,8 +7,11 @@ import org.protu.contentservice.common.properties.AppProperties;
 import org.protu.contentservice.common.response.ApiResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Optional;
+
 import static org.protu.contentservice.common.response.ApiResponseBuilder.buildSuccessApiResponse;
 
 @RestController
@@ -30,6 +33,17 @@ public class ProgressController {
     return jwtHelper.extractUserId(token);
   }
 
+  @GetMapping("/dashboard")
+  public ResponseEntity<ApiResponse<ProgressDashboard>> getProgressDashboard(
+      @RequestHeader("Authorization") String bearerToken,
+      HttpServletRequest request) {
+
+    Long userId = getUserIdFromBearer(bearerToken);
+    ProgressDashboard dashboard = progressService.withPending(userId, progressService.getDashboard(userId));
+    final String message = SuccessMessage.GET_USER_PROGRESS_DASHBOARD.message;
+    return buildSuccessApiResponse(message, dashboard, HttpStatus.OK, apiVersion, request);
+  }
+
   @GetMapping("/courses/{courseName}")
   public ResponseEntity<ApiResponse<UserCourseProgress>> getUserProgressInCourse(
       @PathVariable String courseName,
@@ -67,28 +81,42 @@ public class ProgressController {
   }
 
   @PostMapping("/courses/{courseName}/lessons/{lessonName}/completed")
-  public ResponseEntity<ApiResponse<Void>> markLessonCompleted(
+  public ResponseEntity<ApiResponse<UserCourseProgress>> markLessonCompleted(
       @PathVariable String courseName,
       @PathVariable String lessonName,
       @RequestHeader("Authorization") String bearerToken,
       HttpServletRequest request) {
 
     Long userId = getUserIdFromBearer(bearerToken);
-    progressService.incrementCompletedLessonsByUser(userId, courseName, lessonName);
+    Optional<UserCourseProgress> progress = progressService.incrementCompletedLessonsByUser(userId, courseName, lessonName);
     final String message = SuccessMessage.USER_COMPLETED_A_COURSE_LESSON.message;
-    return buildSuccessApiResponse(message, null, HttpStatus.OK, apiVersion, request);
+    HttpStatus status = progress.isPresent() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+    return buildSuccessApiResponse(message, progress.orElse(null), status, apiVersion, request);
   }
 
   @DeleteMapping("/courses/{courseName}/lessons/{lessonName}/completed")
-  public ResponseEntity<ApiResponse<Void>> markLessonNotCompleted(
+  public ResponseEntity<ApiResponse<UserCourseProgress>> markLessonNotCompleted(
       @PathVariable String courseName,
       @PathVariable String lessonName,
       @RequestHeader("Authorization") String bearerToken,
       HttpServletRequest request) {
 
     Long userId = getUserIdFromBearer(bearerToken);
-    progressService.decrementCompletedLessonsByUser(userId, courseName, lessonName);
+    Optional<UserCourseProgress> progress = progressService.decrementCompletedLessonsByUser(userId, courseName, lessonName);
     final String message = SuccessMessage.USER_UNCOMPLETED_A_COURSE_LESSON.message;
-    return buildSuccessApiResponse(message, null, HttpStatus.OK, apiVersion, request);
+    HttpStatus status = progress.isPresent() ? HttpStatus.OK : HttpStatus.ACCEPTED;
+    return buildSuccessApiResponse(message, progress.orElse(null), status, apiVersion, request);
+  }
+
+  @PostMapping("/lessons/completions")
+  public ResponseEntity<ApiResponse<BulkCompletionResult>> applyLessonCompletions(
+      @Validated @RequestBody BulkCompletionRequest completionRequest,
+      @RequestHeader("Authorization") String bearerToken,
+      HttpServletRequest request) {
+
+    Long userId = getUserIdFromBearer(bearerToken);
+    BulkCompletionResult result = progressService.applyCompletions(userId, completionRequest.completions());
+    final String message = SuccessMessage.USER_APPLIED_LESSON_COMPLETIONS.message;
+    return buildSuccessApiResponse(message, result, HttpStatus.OK, apiVersion, request);
   }
 }
@@ -0,0 +1,6 @@
+package org.protu.contentservice.progress;
+
+import java.util.List;
+
+public record ProgressDashboard(List<CourseProgress> courses, List<TrackProgress> tracks) {
+}
@@ -2,25 +2,137 @@ package org.protu.contentservice.progress;
 
 import org.protu.contentservice.common.exception.custom.CourseHasNoLessonsException;
 import org.protu.contentservice.common.exception.custom.UserNotEnrolledInCourseException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public class ProgressRepository {
 
+  // member/enrolled/total preconditions shared by the completion statements, parameterised on the
+  // users_lessons change ("marked") and the bounded counter update applied when it took effect
+  private static final String COMPLETION_CTE = """
+      WITH member AS (
+        SELECT cl.lesson_id
+        FROM courses_lessons AS cl
+        WHERE cl.course_id = :courseId AND cl.lesson_id = :lessonId
+      ),
+      enrolled AS (
+        SELECT uc.completed_lessons
+        FROM users_courses AS uc
+        WHERE uc.user_id = :userId AND uc.course_id = :courseId
+      ),
+      total AS (
+        SELECT c.lesson_count AS lessons
+        FROM courses AS c
+        WHERE c.id = :courseId
+      ),
+      marked AS (
+      %s
+      )
+      """;
+
+  private static final String MARK_COMPLETED = """
+        INSERT INTO users_lessons (user_id, lesson_id, is_completed)
+        SELECT :userId, m.lesson_id, TRUE
+        FROM member AS m
+        WHERE EXISTS (SELECT 1 FROM enrolled)
+        ON CONFLICT (user_id, lesson_id) DO
+        UPDATE SET is_completed = TRUE
+        WHERE users_lessons.is_completed = FALSE
+        RETURNING lesson_id
+      """;
+
+  private static final String MARK_NOT_COMPLETED = """
+        UPDATE users_lessons AS ul
+        SET is_completed = FALSE
+        WHERE ul.user_id = :userId AND ul.is_completed = TRUE
+          AND ul.lesson_id IN (SELECT lesson_id FROM member)
+          AND EXISTS (SELECT 1 FROM enrolled)
+        RETURNING ul.lesson_id
+      """;
+
+  private static final String INCREMENT_COUNTER = "LEAST(uc.completed_lessons + 1, (SELECT lessons FROM total))";
+  private static final String DECREMENT_COUNTER = "GREATEST(uc.completed_lessons - 1, 0)";
+
+  private static final String COUNTER_UPDATE = """
+      UPDATE users_courses AS uc
+      SET completed_lessons = %s
+      WHERE uc.user_id = :userId AND uc.course_id = :courseId
+        AND EXISTS (SELECT 1 FROM marked)
+      """;
+
+  private static final String COMPLETION_RESULT = """
+      , bumped AS (
+      %s
+        RETURNING uc.completed_lessons
+      )
+      SELECT
+        EXISTS (SELECT 1 FROM users WHERE id = :userId) AS user_exists,
+        EXISTS (SELECT 1 FROM enrolled) AS enrolled,
+        EXISTS (SELECT 1 FROM member) AS in_course,
+        EXISTS (SELECT 1 FROM marked) AS changed,
+        COALESCE((SELECT completed_lessons FROM bumped), (SELECT completed_lessons FROM enrolled)) AS completed_lessons,
+        (SELECT lessons FROM total) AS total_lessons
+      """;
+
+  private static final String COMPLETE_LESSON_SQL =
+      COMPLETION_CTE.formatted(MARK_COMPLETED) + COMPLETION_RESULT.formatted(COUNTER_UPDATE.formatted(INCREMENT_COUNTER));
+  private static final String UNCOMPLETE_LESSON_SQL =
+      COMPLETION_CTE.formatted(MARK_NOT_COMPLETED) + COMPLETION_RESULT.formatted(COUNTER_UPDATE.formatted(DECREMENT_COUNTER));
+
+  // batch forms end in the counter update itself, since JDBC batches cannot return result sets
+  private static final String COMPLETE_LESSON_BATCH_SQL =
+      COMPLETION_CTE.formatted(MARK_COMPLETED) + COUNTER_UPDATE.formatted(INCREMENT_COUNTER);
+  private static final String UNCOMPLETE_LESSON_BATCH_SQL =
+      COMPLETION_CTE.formatted(MARK_NOT_COMPLETED) + COUNTER_UPDATE.formatted(DECREMENT_COUNTER);
+
+  // positional, in the column order of COMPLETION_RESULT and the bulk statement's select list
+  private static final RowMapper<LessonCompletion> COMPLETION_MAPPER = (rs, rowNum) -> new LessonCompletion(
+      rs.getBoolean(1),
+      rs.getBoolean(2),
+      rs.getBoolean(3),
+      rs.getBoolean(4),
+      rs.getObject(5, Integer.class),
+      rs.getObject(6, Integer.class)
+  );
+
+  private static final RowMapper<BulkCompletionRow> BULK_COMPLETION_MAPPER = (rs, rowNum) -> new BulkCompletionRow(
+      rs.getInt(1),
+      rs.getBoolean(2),
+      rs.getInt(3),
+      rs.getBoolean(4),
+      rs.getInt(5),
+      rs.getBoolean(6),
+      rs.getBoolean(7),
+      rs.getBoolean(8),
+      rs.getObject(9, Integer.class),
+      rs.getObject(10, Integer.class)
+  );
+
   private final JdbcClient jdbcClient;
+  private final NamedParameterJdbcTemplate batchJdbc;
 
-  public ProgressRepository(JdbcClient jdbcClient) {
+  public ProgressRepository(JdbcClient jdbcClient, DataSource dataSource) {
     this.jdbcClient = jdbcClient;
+    this.batchJdbc = new NamedParameterJdbcTemplate(dataSource);
   }
 
   public int getNumberOfLessonsInCourse(Integer courseId) {
     Optional<Integer> countOpt = jdbcClient.sql("""
-            SELECT COUNT(*)
-            FROM courses_lessons AS cl
-            WHERE cl.course_id = :courseId
+            SELECT lesson_count
+            FROM courses
+            WHERE id = :courseId
             """)
         .param("courseId", courseId)
         .query(Integer.class)
@@ -43,18 +155,21 @@ public class ProgressRepository {
     return countOpt.orElseThrow(UserNotEnrolledInCourseException::new);
   }
 
-  public void addCourseForUser(Long userId, Integer courseId) {
-    jdbcClient.sql("""
+  /**
+   * Enrolls a user and returns 1, or 0 when already enrolled or when no course has that id.
+   */
+  public int addCourseForUser(Long userId, Integer courseId) {
+    return jdbcClient.sql("""
             INSERT INTO users_courses (user_id, course_id, completed_lessons)
-            VALUES (:userId, :courseId, 0)
+            SELECT :userId, id, 0 FROM courses WHERE id = :courseId
             ON CONFLICT (user_id, course_id) DO NOTHING""")
         .param("userId", userId)
         .param("courseId", courseId)
         .update();
   }
 
-  public void removeCourseForUser(Long userId, Integer courseId) {
-    jdbcClient.sql("""
+  public int removeCourseForUser(Long userId, Integer courseId) {
+    return jdbcClient.sql("""
             DELETE FROM users_courses
             WHERE user_id = :userId AND course_id = :courseId
             """)
@@ -63,57 +178,218 @@ public class ProgressRepository {
         .update();
   }
 
-  public void incrementCompletedLessonByUser(Long userId, Integer courseId) {
-    jdbcClient.sql("""
-            UPDATE users_courses
-            SET completed_lessons = completed_lessons + 1
-            WHERE user_id = :userId AND course_id = :courseId
-            """)
+  public LessonCompletion completeLesson(Long userId, Integer courseId, Integer lessonId) {
+    return completion(COMPLETE_LESSON_SQL, userId, courseId, lessonId);
+  }
+
+  public LessonCompletion uncompleteLesson(Long userId, Integer courseId, Integer lessonId) {
+    return completion(UNCOMPLETE_LESSON_SQL, userId, courseId, lessonId);
+  }
+
+  private LessonCompletion completion(String sql, Long userId, Integer courseId, Integer lessonId) {
+    return jdbcClient.sql(sql)
         .param("userId", userId)
         .param("courseId", courseId)
-        .update();
+        .param("lessonId", lessonId)
+        .query(COMPLETION_MAPPER)
+        .single();
   }
 
-  public void decrementCompletedLessonsByUser(Long userId, Integer courseId) {
-    jdbcClient.sql("""
-            UPDATE users_courses
-            SET completed_lessons = completed_lessons - 1
-            WHERE user_id = :userId AND course_id = :courseId
+  /**
+   * Applies buffered completions with one JDBC batch per direction. Each entry goes through the same
+   * guarded statement as {@link #completeLesson}, so entries whose preconditions no longer hold are
+   * no-ops.
+   */
+  public void applyCompletions(Collection<PendingCompletion> completions) {
+    List<SqlParameterSource> completed = completions.stream()
+        .filter(PendingCompletion::completed)
+        .map(ProgressRepository::completionParams)
+        .toList();
+    List<SqlParameterSource> uncompleted = completions.stream()
+        .filter(completion -> !completion.completed())
+        .map(ProgressRepository::completionParams)
+        .toList();
+
+    if (!completed.isEmpty()) {
+      batchJdbc.batchUpdate(COMPLETE_LESSON_BATCH_SQL, completed.toArray(SqlParameterSource[]::new));
+    }
+    if (!uncompleted.isEmpty()) {
+      batchJdbc.batchUpdate(UNCOMPLETE_LESSON_BATCH_SQL, uncompleted.toArray(SqlParameterSource[]::new));
+    }
+  }
+
+  private static SqlParameterSource completionParams(PendingCompletion completion) {
+    return new MapSqlParameterSource()
+        .addValue("userId", completion.userId())
+        .addValue("courseId", completion.courseId())
+        .addValue("lessonId", completion.lessonId());
+  }
+
+  public Set<Integer> findCompletedLessonIds(Long userId, Collection<Integer> lessonIds) {
+    if (lessonIds.isEmpty()) {
+      return Set.of();
+    }
+
+    return Set.copyOf(jdbcClient.sql("""
+            SELECT lesson_id
+            FROM users_lessons
+            WHERE user_id = :userId AND lesson_id IN (:lessonIds) AND is_completed = TRUE
             """)
         .param("userId", userId)
-        .param("courseId", courseId)
-        .update();
+        .param("lessonIds", lessonIds)
+        .query(Integer.class)
+        .list());
   }
 
-  public boolean markLessonCompleted(Long userId, Integer lessonId) {
-    int count = jdbcClient.sql("""
-            INSERT INTO users_lessons (user_id, lesson_id, is_completed)
-            VALUES (:userId, :lessonId, :isCompleted)
-            ON CONFLICT (user_id, lesson_id) DO
-            UPDATE SET is_completed = TRUE
-            WHERE users_lessons.is_completed = FALSE;
+  /**
+   * Applies a user's completions in one statement; entries must name distinct lessons. Rows come
+   * back in input order, carrying the guard outcomes and the resulting course progress.
+   */
+  public List<BulkCompletionRow> bulkApplyCompletions(Long userId, List<PendingCompletion> completions) {
+    return jdbcClient.sql("""
+            WITH input AS (
+              SELECT i.course_id, i.lesson_id, i.completed, i.ord
+              FROM unnest(CAST(:courseIds AS INT[]), CAST(:lessonIds AS INT[]), CAST(:completed AS BOOLEAN[]))
+                WITH ORDINALITY AS i(course_id, lesson_id, completed, ord)
+            ),
+            checked AS (
+              SELECT
+                i.*,
+                EXISTS (
+                  SELECT 1 FROM users_courses AS uc
+                  WHERE uc.user_id = :userId AND uc.course_id = i.course_id
+                ) AS enrolled,
+                EXISTS (
+                  SELECT 1 FROM courses_lessons AS cl
+                  WHERE cl.course_id = i.course_id AND cl.lesson_id = i.lesson_id
+                ) AS in_course
+              FROM input AS i
+            ),
+            completed_marks AS (
+              INSERT INTO users_lessons (user_id, lesson_id, is_completed)
+              SELECT :userId, c.lesson_id, TRUE
+              FROM checked AS c
+              WHERE c.completed AND c.enrolled AND c.in_course
+              ON CONFLICT (user_id, lesson_id) DO
+              UPDATE SET is_completed = TRUE
+              WHERE users_lessons.is_completed = FALSE
+              RETURNING lesson_id
+            ),
+            uncompleted_marks AS (
+              UPDATE users_lessons AS ul
+              SET is_completed = FALSE
+              FROM checked AS c
+              WHERE NOT c.completed AND c.enrolled AND c.in_course
+                AND ul.user_id = :userId AND ul.lesson_id = c.lesson_id AND ul.is_completed = TRUE
+              RETURNING ul.lesson_id
+            ),
+            changed AS (
+              SELECT lesson_id FROM completed_marks
+              UNION ALL
+              SELECT lesson_id FROM uncompleted_marks
+            ),
+            deltas AS (
+              SELECT c.course_id, SUM(CASE WHEN c.completed THEN 1 ELSE -1 END) AS delta
+              FROM checked AS c
+              WHERE c.lesson_id IN (SELECT lesson_id FROM changed)
+              GROUP BY c.course_id
+            ),
+            bumped AS (
+              UPDATE users_courses AS uc
+              SET completed_lessons = LEAST(GREATEST(uc.completed_lessons + d.delta, 0), co.lesson_count)
+              FROM deltas AS d
+              JOIN courses AS co ON co.id = d.course_id
+              WHERE uc.user_id = :userId AND uc.course_id = d.course_id
+              RETURNING uc.course_id, uc.completed_lessons
+            )
+            SELECT
+              c.ord,
+              EXISTS (SELECT 1 FROM users WHERE id = :userId) AS user_exists,
+              c.course_id,
+              co.id IS NOT NULL AS course_exists,
+              c.lesson_id,
+              c.enrolled,
+              c.in_course,
+              c.lesson_id IN (SELECT lesson_id FROM changed) AS changed,
+              COALESCE(b.completed_lessons, uc.completed_lessons) AS completed_lessons,
+              co.lesson_count AS total_lessons
+            FROM checked AS c
+            LEFT JOIN courses AS co ON co.id = c.course_id
+            LEFT JOIN bumped AS b ON b.course_id = c.course_id
+            LEFT JOIN users_courses AS uc ON uc.user_id = :userId AND uc.course_id = c.course_id
+            ORDER BY c.ord
             """)
         .param("userId", userId)
-        .param("lessonId", lessonId)
-        .param("isCompleted", true)
-        .update();
-
-    return count >= 1;
+        .param("courseIds", completions.stream().map(PendingCompletion::courseId).toArray(Integer[]::new))
+        .param("lessonIds", completions.stream().map(PendingCompletion::lessonId).toArray(Integer[]::new))
+        .param("completed", completions.stream().map(PendingCompletion::completed).toArray(Boolean[]::new))
+        .query(BULK_COMPLETION_MAPPER)
+        .list();
   }
 
-  public boolean markLessonUncompleted(Long userId, Integer lessonId) {
-    int count = jdbcClient.sql("""
-            INSERT INTO users_lessons (user_id, lesson_id, is_completed)
-            VALUES (:userId, :lessonId, :isCompleted)
-            ON CONFLICT (user_id, lesson_id) DO
-            UPDATE SET is_completed = FALSE
-            WHERE users_lessons.is_completed = TRUE;
+  /**
+   * Every enrolled course and every track holding at least one of them, in one pass: course rows
+   * come straight from users_courses, track rows aggregate over all of the track's courses. Tracks
+   * are reached through the enrolled courses, so the cost follows the user, not the catalogue.
+   */
+  public ProgressDashboard findDashboard(Long userId) {
+    List<CourseProgress> courses = new ArrayList<>();
+    List<TrackProgress> tracks = new ArrayList<>();
+
+    jdbcClient.sql("""
+            WITH enrolled AS (
+              SELECT uc.course_id, c.name, uc.completed_lessons, c.lesson_count
+              FROM users_courses AS uc
+              JOIN courses AS c ON c.id = uc.course_id
+              WHERE uc.user_id = :userId
+            )
+            SELECT
+              'course' AS kind,
+              e.course_id AS id,
+              e.name,
+              NULL::INT[] AS enrolled_course_ids,
+              1 AS total_courses,
+              e.completed_lessons,
+              e.lesson_count AS total_lessons
+            FROM enrolled AS e
+            UNION ALL
+            SELECT
+              'track',
+              t.id,
+              t.name,
+              array_agg(e.course_id ORDER BY e.course_id) FILTER (WHERE e.course_id IS NOT NULL),
+              COUNT(*)::INT,
+              COALESCE(SUM(e.completed_lessons), 0)::INT,
+              SUM(c.lesson_count)::INT
+            FROM tracks AS t
+            JOIN tracks_courses AS tc ON tc.track_id = t.id
+            JOIN courses AS c ON c.id = tc.course_id
+            LEFT JOIN enrolled AS e ON e.course_id = tc.course_id
+            WHERE t.id IN (
+              SELECT holding.track_id
+              FROM tracks_courses AS holding
+              JOIN enrolled AS held ON held.course_id = holding.course_id
+            )
+            GROUP BY t.id, t.name
+            ORDER BY kind, name
             """)
         .param("userId", userId)
-        .param("lessonId", lessonId)
-        .param("isCompleted", false)
-        .update();
+        .query(rs -> {
+          if (rs.getString("kind").equals("course")) {
+            courses.add(new CourseProgress(
+                rs.getInt("id"), rs.getString("name"), rs.getInt("completed_lessons"), rs.getInt("total_lessons")));
+          } else {
+            Integer[] enrolledCourseIds = (Integer[]) rs.getArray("enrolled_course_ids").getArray();
+            tracks.add(new TrackProgress(
+                rs.getInt("id"),
+                rs.getString("name"),
+                List.of(enrolledCourseIds),
+                rs.getInt("total_courses"),
+                rs.getInt("completed_lessons"),
+                rs.getInt("total_lessons")));
+          }
+        });
 
-    return count >= 1;
+    return new ProgressDashboard(courses, tracks);
   }
 }
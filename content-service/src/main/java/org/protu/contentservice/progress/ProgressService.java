@@ -1,92 +1,300 @@
 package org.protu.contentservice.progress;
 
+import org.protu.contentservice.common.datasource.RecentWriters;
+import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
 import org.protu.contentservice.common.exception.custom.LessonAlreadyCompletedException;
 import org.protu.contentservice.common.exception.custom.LessonAlreadyNotCompletedException;
-import org.protu.contentservice.course.CourseDto;
-import org.protu.contentservice.course.CourseService;
-import org.protu.contentservice.lesson.LessonService;
-import org.protu.contentservice.lesson.dto.LessonWithoutContent;
+import org.protu.contentservice.common.exception.custom.UserNotEnrolledInCourseException;
+import org.protu.contentservice.common.exception.custom.UserNotFoundException;
+import org.protu.contentservice.common.index.EntityIdIndex;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
 @Service
 public class ProgressService {
 
-  private final CourseService courseService;
-  private final LessonService lessonService;
+  private static final String CACHE_COURSE_LESSONS_WITH_COMPLETION = "course-lessons-with-completion";
+  private static final String CACHE_PROGRESS_DASHBOARD = "progress-dashboard";
+  private final EntityIdIndex ids;
   private final UserReplicaService userReplicaService;
   private final ProgressRepository progressRepo;
+  private final CompletionBuffer completions;
+  private final CacheManager cacheManager;
+  private final ObjectProvider<RecentWriters> recentWriters;
+
+  public ProgressService(
+      EntityIdIndex ids,
+      UserReplicaService userReplicaService,
+      ProgressRepository progressRepo,
+      CompletionBuffer completions,
+      CacheManager cacheManager,
+      ObjectProvider<RecentWriters> recentWriters) {
 
-  public ProgressService(CourseService courseService, LessonService lessonService, UserReplicaService userReplicaService, ProgressRepository progressRepo) {
-    this.courseService = courseService;
-    this.lessonService = lessonService;
+    this.ids = ids;
     this.userReplicaService = userReplicaService;
     this.progressRepo = progressRepo;
+    this.completions = completions;
+    this.cacheManager = cacheManager;
+    this.recentWriters = recentWriters;
   }
 
   @Transactional(readOnly = true)
   public UserCourseProgress getUserProgressInCourse(Long userId, String courseName) {
-    userReplicaService.getUserById(userId);
-    CourseDto course = courseService.getCourseByNameOrThrow(courseName);
+    userReplicaService.requireUser(userId);
+    int courseId = ids.courseId(courseName);
+
+    int completedLessons = progressRepo.getTotalNumberOfCompletedLessonsInCourse(userId, courseId);
+    int totalLessons = progressRepo.getNumberOfLessonsInCourse(courseId);
+    List<PendingCompletion> unflushed = completions.pending(userId, courseId);
+    if (!unflushed.isEmpty()) {
+      int delta = pendingDeltas(userId, unflushed).getOrDefault(courseId, 0);
+      completedLessons = Math.clamp(completedLessons + delta, 0, totalLessons);
+    }
+    return new UserCourseProgress(courseId, completedLessons, totalLessons);
+  }
+
+  private Map<Integer, Integer> pendingDeltas(Long userId, List<PendingCompletion> unflushed) {
+    Set<Integer> completedIds = progressRepo.findCompletedLessonIds(
+        userId, unflushed.stream().map(PendingCompletion::lessonId).toList());
+
+    Map<Integer, Integer> deltas = new HashMap<>();
+    for (PendingCompletion completion : unflushed) {
+      boolean stored = completedIds.contains(completion.lessonId());
+      if (completion.completed() && !stored) {
+        deltas.merge(completion.courseId(), 1, Integer::sum);
+      } else if (!completion.completed() && stored) {
+        deltas.merge(completion.courseId(), -1, Integer::sum);
+      }
+    }
+    return deltas;
+  }
 
-    int completedLessons = progressRepo.getTotalNumberOfCompletedLessonsInCourse(userId, course.id());
-    int totalLessons = progressRepo.getNumberOfLessonsInCourse(course.id());
-    return new UserCourseProgress(course.id(), completedLessons, totalLessons);
+  @Transactional(readOnly = true)
+  @Cacheable(value = CACHE_PROGRESS_DASHBOARD, key = "#userId")
+  public ProgressDashboard getDashboard(Long userId) {
+    return progressRepo.findDashboard(userId);
+  }
+
+  /**
+   * Overlays the user's buffered write-behind completions on a (possibly cached) dashboard.
+   */
+  public ProgressDashboard withPending(Long userId, ProgressDashboard dashboard) {
+    List<PendingCompletion> unflushed = completions.pending(userId);
+    if (unflushed.isEmpty()) {
+      return dashboard;
+    }
+
+    Map<Integer, Integer> deltas = pendingDeltas(userId, unflushed);
+    Map<Integer, Integer> applied = new HashMap<>();
+    List<CourseProgress> courses = dashboard.courses().stream()
+        .map(course -> {
+          int completed = Math.clamp(
+              course.completedLessons() + deltas.getOrDefault(course.courseId(), 0), 0, course.totalLessons());
+          if (completed == course.completedLessons()) {
+            return course;
+          }
+          applied.put(course.courseId(), completed - course.completedLessons());
+          return new CourseProgress(course.courseId(), course.courseName(), completed, course.totalLessons());
+        })
+        .toList();
+    if (applied.isEmpty()) {
+      return dashboard;
+    }
+
+    List<TrackProgress> tracks = dashboard.tracks().stream()
+        .map(track -> {
+          int delta = track.enrolledCourseIds().stream().mapToInt(id -> applied.getOrDefault(id, 0)).sum();
+          return delta == 0 ? track : new TrackProgress(
+              track.trackId(),
+              track.trackName(),
+              track.enrolledCourseIds(),
+              track.totalCourses(),
+              track.completedLessons() + delta,
+              track.totalLessons());
+        })
+        .toList();
+    return new ProgressDashboard(courses, tracks);
   }
 
   @Transactional
+  @CacheEvict(value = CACHE_PROGRESS_DASHBOARD, key = "#userId")
   public void enrollUserInCourse(Long userId, String courseName) {
-    userReplicaService.getUserById(userId);
-    CourseDto course = courseService.getCourseByNameOrThrow(courseName);
-    progressRepo.addCourseForUser(userId, course.id());
+    userReplicaService.requireUser(userId);
+    int courseId = ids.courseId(courseName);
+    if (progressRepo.addCourseForUser(userId, courseId) == 0 && ids.courseIdChanged(courseName, courseId)) {
+      progressRepo.addCourseForUser(userId, ids.courseId(courseName));
+    }
   }
 
   @Transactional
+  @CacheEvict(value = CACHE_PROGRESS_DASHBOARD, key = "#userId")
   public void cancelUserEnrollmentInCourse(Long userId, String courseName) {
-    userReplicaService.getUserById(userId);
-    CourseDto course = courseService.getCourseByNameOrThrow(courseName);
-    progressRepo.removeCourseForUser(userId, course.id());
+    userReplicaService.requireUser(userId);
+    int courseId = ids.courseId(courseName);
+    if (progressRepo.removeCourseForUser(userId, courseId) == 0 && ids.courseIdChanged(courseName, courseId)) {
+      progressRepo.removeCourseForUser(userId, ids.courseId(courseName));
+    }
   }
 
-  private boolean markLessonCompleted(Long userId, String lessonName) {
-    LessonWithoutContent lesson = lessonService.findByNameWithoutContent(lessonName);
-    return progressRepo.markLessonCompleted(userId, lesson.id());
+  // a completion that found no enrollment or no course link may have used a stale id; both names are re-read
+  private boolean staleIds(LessonCompletion completion, String courseName, int courseId, String lessonName, int lessonId) {
+    if (!completion.userExists() || (completion.enrolled() && completion.inCourse())) {
+      return false;
+    }
+    boolean courseChanged = ids.courseIdChanged(courseName, courseId);
+    return ids.lessonIdChanged(lessonName, lessonId) || courseChanged;
   }
 
-  private boolean markLessonNotCompleted(Long userId, String lessonName) {
-    LessonWithoutContent lesson = lessonService.findByNameWithoutContent(lessonName);
-    return progressRepo.markLessonUncompleted(userId, lesson.id());
+  // completions commit outside a transaction, so the transaction listener never sees them
+  private void rememberWrite(Long userId, LessonCompletion completion) {
+    if (completion.changed()) {
+      recentWriters.ifAvailable(writers -> writers.markWrote(userId));
+    }
   }
 
-  @Transactional
-  public void incrementCompletedLessonsByUser(Long userId, String courseName, String lessonName) {
-    userReplicaService.getUserById(userId);
-    CourseDto course = courseService.getCourseByNameOrThrow(courseName);
+  private UserCourseProgress toProgress(int courseId, String lessonName, LessonCompletion completion, Supplier<? extends RuntimeException> unchanged) {
+    if (!completion.userExists()) {
+      throw new UserNotFoundException();
+    }
+    if (!completion.enrolled()) {
+      throw new UserNotEnrolledInCourseException();
+    }
+    if (!completion.inCourse()) {
+      throw new EntityNotFoundException("Lesson", lessonName);
+    }
+    if (!completion.changed()) {
+      throw unchanged.get();
+    }
+    return new UserCourseProgress(courseId, completion.completedLessons(), completion.totalLessons());
+  }
 
-    if (!markLessonCompleted(userId, lessonName)) {
-      throw new LessonAlreadyCompletedException();
+  // a single guarded statement, so no surrounding transaction is needed; empty when write-behind took it
+  @Caching(evict = {
+      @CacheEvict(value = CACHE_COURSE_LESSONS_WITH_COMPLETION, key = "{#userId, #courseName}"),
+      @CacheEvict(value = CACHE_PROGRESS_DASHBOARD, key = "#userId")
+  })
+  public Optional<UserCourseProgress> incrementCompletedLessonsByUser(Long userId, String courseName, String lessonName) {
+    int courseId = ids.courseId(courseName);
+    int lessonId = ids.lessonId(lessonName);
+    if (completions.isEnabled() && completions.offer(new PendingCompletion(userId, courseId, courseName, lessonId, true))) {
+      return Optional.empty();
     }
 
-    int lessonsCount = progressRepo.getNumberOfLessonsInCourse(course.id());
-    int completedLessonsCount = progressRepo.getTotalNumberOfCompletedLessonsInCourse(userId, course.id());
+    LessonCompletion completion = progressRepo.completeLesson(userId, courseId, lessonId);
+    if (staleIds(completion, courseName, courseId, lessonName, lessonId)) {
+      courseId = ids.courseId(courseName);
+      lessonId = ids.lessonId(lessonName);
+      completion = progressRepo.completeLesson(userId, courseId, lessonId);
+    }
+    rememberWrite(userId, completion);
+    return Optional.of(toProgress(courseId, lessonName, completion, LessonAlreadyCompletedException::new));
+  }
+
+  @Caching(evict = {
+      @CacheEvict(value = CACHE_COURSE_LESSONS_WITH_COMPLETION, key = "{#userId, #courseName}"),
+      @CacheEvict(value = CACHE_PROGRESS_DASHBOARD, key = "#userId")
+  })
+  public Optional<UserCourseProgress> decrementCompletedLessonsByUser(Long userId, String courseName, String lessonName) {
+    int courseId = ids.courseId(courseName);
+    int lessonId = ids.lessonId(lessonName);
+    if (completions.isEnabled() && completions.offer(new PendingCompletion(userId, courseId, courseName, lessonId, false))) {
+      return Optional.empty();
+    }
 
-    if (completedLessonsCount < lessonsCount) {
-      progressRepo.incrementCompletedLessonByUser(userId, course.id());
+    LessonCompletion completion = progressRepo.uncompleteLesson(userId, courseId, lessonId);
+    if (staleIds(completion, courseName, courseId, lessonName, lessonId)) {
+      courseId = ids.courseId(courseName);
+      lessonId = ids.lessonId(lessonName);
+      completion = progressRepo.uncompleteLesson(userId, courseId, lessonId);
     }
+    rememberWrite(userId, completion);
+    return Optional.of(toProgress(courseId, lessonName, completion, LessonAlreadyNotCompletedException::new));
   }
 
+  /**
+   * Applies many completions for one user: names are resolved in bulk and all state changes go
+   * through one statement. When a lesson is listed more than once, its last entry wins.
+   */
   @Transactional
-  public void decrementCompletedLessonsByUser(Long userId, String courseName, String lessonName) {
-    userReplicaService.getUserById(userId);
-    CourseDto course = courseService.getCourseByNameOrThrow(courseName);
+  @CacheEvict(value = CACHE_PROGRESS_DASHBOARD, key = "#userId")
+  public BulkCompletionResult applyCompletions(Long userId, List<LessonCompletionRequest> requests) {
+    Map<String, Integer> courseIds = ids.courseIds(requests.stream().map(LessonCompletionRequest::courseName).toList());
+    Map<String, Integer> lessonIds = ids.lessonIds(requests.stream().map(LessonCompletionRequest::lessonName).toList());
+
+    CompletionStatus[] statuses = new CompletionStatus[requests.size()];
+    Map<Integer, Integer> lastEntryByLesson = new LinkedHashMap<>();
+    for (int i = 0; i < requests.size(); i++) {
+      LessonCompletionRequest request = requests.get(i);
+      Integer lessonId = lessonIds.get(request.lessonName());
+      if (!courseIds.containsKey(request.courseName())) {
+        statuses[i] = CompletionStatus.COURSE_NOT_FOUND;
+      } else if (lessonId == null) {
+        statuses[i] = CompletionStatus.LESSON_NOT_FOUND;
+      } else {
+        Integer superseded = lastEntryByLesson.remove(lessonId);
+        if (superseded != null) {
+          statuses[superseded] = CompletionStatus.SUPERSEDED;
+        }
+        lastEntryByLesson.put(lessonId, i);
+      }
+    }
+
+    List<Integer> entries = List.copyOf(lastEntryByLesson.values());
+    List<PendingCompletion> changes = entries.stream()
+        .map(i -> {
+          LessonCompletionRequest request = requests.get(i);
+          return new PendingCompletion(
+              userId, courseIds.get(request.courseName()), request.courseName(), lessonIds.get(request.lessonName()), request.completed());
+        })
+        .toList();
+
+    Map<Integer, UserCourseProgress> progress = new LinkedHashMap<>();
+    if (!changes.isEmpty()) {
+      completions.discard(userId, lastEntryByLesson.keySet());
+      List<BulkCompletionRow> rows = progressRepo.bulkApplyCompletions(userId, changes);
+      if (!rows.getFirst().userExists()) {
+        throw new UserNotFoundException();
+      }
+
+      Cache lessonsWithCompletion = cacheManager.getCache(CACHE_COURSE_LESSONS_WITH_COMPLETION);
+      for (BulkCompletionRow row : rows) {
+        int j = row.ord() - 1;
+        // the course may have been deleted since its name was resolved
+        statuses[entries.get(j)] = !row.courseExists() ? CompletionStatus.COURSE_NOT_FOUND
+            : !row.enrolled() ? CompletionStatus.NOT_ENROLLED
+            : !row.inCourse() ? CompletionStatus.LESSON_NOT_IN_COURSE
+            : row.changed() ? CompletionStatus.UPDATED
+            : CompletionStatus.UNCHANGED;
 
-    if (!markLessonNotCompleted(userId, lessonName)) {
-      throw new LessonAlreadyNotCompletedException();
+        if (row.courseExists() && row.enrolled()) {
+          progress.put(row.courseId(), new UserCourseProgress(row.courseId(), row.completedLessons(), row.totalLessons()));
+        }
+        if (row.changed() && lessonsWithCompletion != null) {
+          lessonsWithCompletion.evict(List.of(userId, changes.get(j).courseName()));
+        }
+      }
     }
 
-    int completedLessonsCount = progressRepo.getTotalNumberOfCompletedLessonsInCourse(userId, course.id());
-    if (completedLessonsCount > 0) {
-      progressRepo.decrementCompletedLessonsByUser(userId, course.id());
+    List<LessonCompletionResult> results = new ArrayList<>(requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      LessonCompletionRequest request = requests.get(i);
+      results.add(new LessonCompletionResult(request.courseName(), request.lessonName(), request.completed(), statuses[i]));
     }
+    return new BulkCompletionResult(results, List.copyOf(progress.values()));
   }
 }
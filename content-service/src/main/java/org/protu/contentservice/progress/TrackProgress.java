@@ -0,0 +1,12 @@
+package org.protu.contentservice.progress;
+
+import java.util.List;
+
+public record TrackProgress(
+    Integer trackId,
+    String trackName,
+    List<Integer> enrolledCourseIds,
+    Integer totalCourses,
+    Integer completedLessons,
+    Integer totalLessons) {
+}
@@ -0,0 +1,9 @@
+package org.protu.contentservice.progress;
+
+import java.sql.Timestamp;
+
+/**
+ * A user event as applied to the replica; {@code eventAt} is the publisher's timestamp and may be null.
+ */
+public record UserEvent(UserData user, Timestamp eventAt) {
+}
@@ -0,0 +1,100 @@
+package org.protu.contentservice.progress;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds a batch of user events into the net change per user, so the batch can be applied as one
+ * delete, one upsert and one role update while preserving each user's event order.
+ */
+final class UserEventBatch {
+
+  private enum Op { UPSERT, UPDATE_ROLES, DELETE }
+
+  private static final class Change {
+    private Op op;
+    private UserData data;
+    private Timestamp eventAt;
+    private boolean deleteFirst;
+
+    // events older than one already folded in are stale, as they would be against the replica row
+    private boolean isStale(Timestamp at) {
+      return at != null && eventAt != null && at.before(eventAt);
+    }
+
+    private UserEvent event() {
+      return new UserEvent(data, eventAt);
+    }
+  }
+
+  private final Map<Long, Change> changes = new LinkedHashMap<>();
+
+  void created(UserData user, Timestamp at) {
+    Change change = changes.computeIfAbsent(user.id(), _ -> new Change());
+    if (change.isStale(at)) {
+      return;
+    }
+    change.eventAt = at;
+    // a user deleted and created again in one batch must lose the rows cascaded from the old one
+    change.deleteFirst = change.op == Op.DELETE;
+    change.op = Op.UPSERT;
+    change.data = user;
+  }
+
+  void updated(UserData user, Timestamp at) {
+    Change change = changes.computeIfAbsent(user.id(), _ -> new Change());
+    if (change.op == Op.DELETE || change.isStale(at)) {
+      return;
+    }
+    change.eventAt = at;
+    if (change.op == Op.UPSERT) {
+      change.data = new UserData(user.id(), change.data.publicId(), user.roles());
+      return;
+    }
+    change.op = Op.UPDATE_ROLES;
+    change.data = user;
+  }
+
+  void deleted(UserData user, Timestamp at) {
+    Change change = changes.computeIfAbsent(user.id(), _ -> new Change());
+    if (change.isStale(at)) {
+      return;
+    }
+    change.op = Op.DELETE;
+    change.data = user;
+    change.eventAt = at;
+    change.deleteFirst = false;
+  }
+
+  List<UserEvent> deletions() {
+    List<UserEvent> events = new ArrayList<>();
+    for (Change change : changes.values()) {
+      // a delete ahead of a re-creation is guarded by the newer timestamp, which still covers it
+      if (change.op == Op.DELETE || change.deleteFirst) {
+        events.add(change.event());
+      }
+    }
+    return events;
+  }
+
+  List<UserEvent> upserts() {
+    return withOp(Op.UPSERT);
+  }
+
+  List<UserEvent> roleUpdates() {
+    return withOp(Op.UPDATE_ROLES);
+  }
+
+  private List<UserEvent> withOp(Op op) {
+    List<UserEvent> events = new ArrayList<>();
+    for (Change change : changes.values()) {
+      if (change.op == op) {
+        events.add(change.event());
+      }
+    }
+    return events;
+  }
+}
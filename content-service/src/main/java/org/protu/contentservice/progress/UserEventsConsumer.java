@@ -1,41 +1,117 @@
 package org.protu.contentservice.progress;
 
 import org.protu.contentservice.common.properties.AppProperties;
+import org.protu.contentservice.common.rabbit.ProcessedMessages;
 import org.protu.contentservice.common.rabbit.RabbitMessage;
-import org.springframework.amqp.core.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 public class UserEventsConsumer {
 
+  private static final Logger log = LoggerFactory.getLogger(UserEventsConsumer.class);
+
+  static final String LISTENER_ID = "userEvents";
+  static final String BATCH_LISTENER_ID = "userEventsBatch";
+
   private final UserReplicaService userReplicaService;
+  private final ProcessedMessages processedMessages;
   private final String USER_CREATED;
   private final String USER_UPDATED;
   private final String USER_DELETED;
 
-  public UserEventsConsumer(UserReplicaService userReplicaService, AppProperties props) {
+  public UserEventsConsumer(
+      UserReplicaService userReplicaService,
+      ProcessedMessages processedMessages,
+      AppProperties props) {
+
     this.userReplicaService = userReplicaService;
+    this.processedMessages = processedMessages;
     USER_CREATED = props.rabbit().routingKey().userCreated();
     USER_UPDATED = props.rabbit().routingKey().userUpdated();
     USER_DELETED = props.rabbit().routingKey().userDeleted();
   }
 
-  @RabbitListener(queues = "${app.rabbit.queue.user-replica}")
-  public void consume(RabbitMessage<UserData> rabbitMessage, Message message) {
-    final String receivedRoutingKey = message.getMessageProperties().getReceivedRoutingKey();
+  @RabbitListener(
+      id = LISTENER_ID,
+      queues = "${app.rabbit.queue.user-replica}",
+      autoStartup = "#{!${app.rabbit.batch.enabled}}")
+  public void consume(
+      RabbitMessage<UserData> rabbitMessage,
+      @Header(AmqpHeaders.RECEIVED_ROUTING_KEY) String receivedRoutingKey) {
 
+    if (processedMessages.isProcessed(rabbitMessage.messageId())) {
+      return;
+    }
+
+    Timestamp eventAt = eventAt(rabbitMessage);
     if (receivedRoutingKey.equals(USER_CREATED)) {
-      userReplicaService.addUser(rabbitMessage.data());
+      userReplicaService.addUser(rabbitMessage.data(), eventAt);
 
     } else if (receivedRoutingKey.equals(USER_UPDATED)) {
-      userReplicaService.updateUserRoles(rabbitMessage.data());
+      userReplicaService.updateUserRoles(rabbitMessage.data(), eventAt);
 
     } else if (receivedRoutingKey.equals(USER_DELETED)) {
-      userReplicaService.deleteUser(rabbitMessage.data().id());
+      userReplicaService.deleteUser(rabbitMessage.data().id(), eventAt);
 
     } else {
       throw new IllegalArgumentException("Unrecognized routing key: " + receivedRoutingKey);
     }
+    processedMessages.markProcessed(rabbitMessage.messageId());
+  }
+
+  private static Timestamp eventAt(RabbitMessage<UserData> rabbitMessage) {
+    return rabbitMessage.metaData() != null ? rabbitMessage.metaData().timestamp() : null;
+  }
+
+  /**
+   * Batch mode: the net change per user is applied with one statement per kind of change. Events of
+   * one user are ordered within a batch; across batches only with a single consumer.
+   */
+  @RabbitListener(
+      id = BATCH_LISTENER_ID,
+      queues = "${app.rabbit.queue.user-replica}",
+      containerFactory = "userEventsBatchContainerFactory",
+      autoStartup = "${app.rabbit.batch.enabled}")
+  public void consumeBatch(List<Message<RabbitMessage<UserData>>> messages) {
+    UserEventBatch batch = new UserEventBatch();
+    List<String> messageIds = new ArrayList<>(messages.size());
+    for (var message : messages) {
+      final String receivedRoutingKey = (String) message.getHeaders().get(AmqpHeaders.RECEIVED_ROUTING_KEY);
+      RabbitMessage<UserData> rabbitMessage = message.getPayload();
+      if (processedMessages.isProcessed(rabbitMessage.messageId())) {
+        continue;
+      }
+
+      UserData user = rabbitMessage.data();
+      Timestamp eventAt = eventAt(rabbitMessage);
+      if (USER_CREATED.equals(receivedRoutingKey)) {
+        batch.created(user, eventAt);
+
+      } else if (USER_UPDATED.equals(receivedRoutingKey)) {
+        batch.updated(user, eventAt);
+
+      } else if (USER_DELETED.equals(receivedRoutingKey)) {
+        batch.deleted(user, eventAt);
+
+      } else {
+        // failing the listener would redeliver, and finally drop, the whole batch for one bad message
+        log.warn("Skipping user event {} with unrecognized routing key {}", rabbitMessage.messageId(), receivedRoutingKey);
+        continue;
+      }
+      messageIds.add(rabbitMessage.messageId());
+    }
+
+    userReplicaService.applyBatch(batch.deletions(), batch.upserts(), batch.roleUpdates());
+    messageIds.forEach(processedMessages::markProcessed);
   }
 }
@@ -0,0 +1,38 @@
+package org.protu.contentservice.progress;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.protu.contentservice.common.enums.SuccessMessage;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.protu.contentservice.common.response.ApiResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.protu.contentservice.common.response.ApiResponseBuilder.buildSuccessApiResponse;
+
+@RestController
+@RequestMapping("/api/${app.api.version}/users/replica")
+public class UserReplicaController {
+
+  private final UserSnapshotImporter snapshotImporter;
+  private final String apiVersion;
+
+  public UserReplicaController(UserSnapshotImporter snapshotImporter, AppProperties props) {
+    this.snapshotImporter = snapshotImporter;
+    apiVersion = props.api().version();
+  }
+
+  // the caller's token is forwarded, so user-service decides whether it may export the users
+  @PostMapping("/snapshot")
+  public ResponseEntity<ApiResponse<UserSnapshotImport>> rebuildUserReplica(
+      @RequestHeader("Authorization") String bearerToken,
+      HttpServletRequest request) {
+
+    UserSnapshotImport result = snapshotImporter.rebuildReplica(bearerToken);
+    final String message = SuccessMessage.USER_REPLICA_REBUILT.message;
+    return buildSuccessApiResponse(message, result, HttpStatus.OK, apiVersion, request);
+  }
+}
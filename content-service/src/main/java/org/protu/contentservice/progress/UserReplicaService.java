@@ -1,47 +1,396 @@
 package org.protu.contentservice.progress;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.postgresql.PGConnection;
+import org.protu.contentservice.common.etag.EntityVersions;
 import org.protu.contentservice.common.exception.custom.UserNotFoundException;
+import org.protu.contentservice.common.helpers.ConcurrentLongSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
 
+/**
+ * Replica of the user-service users, kept current from the user-events stream.
+ * <p>
+ * The ids of known users are also held in memory, so {@link #requireUser} is answered without a
+ * database round trip. The set is loaded once the application is ready, grows with created events
+ * and with database hits on a miss, and shrinks with deleted events. Deletions consumed by a peer
+ * instance arrive through the entity version channel.
+ */
 @Service
 public class UserReplicaService {
 
+  private static final Logger log = LoggerFactory.getLogger(UserReplicaService.class);
+  private static final String USER_SCOPE_PREFIX = "user:";
+  private static final int LOAD_ATTEMPTS = 3;
+  private static final RowMapper<User> USER_MAPPER = (rs, rowNum) -> new User(rs.getLong(1), rs.getString(2), rs.getString(3));
+  // replica rows only move forward: events older than the last applied one are no-ops, and
+  // redeliveries of the last one match no row, so they cost an index lookup and no write
+  private static final String NEWER_EVENT =
+      "(users.last_event_at IS NULL OR CAST(:eventAt AS TIMESTAMPTZ) IS NULL OR users.last_event_at < :eventAt)";
+
   private final JdbcClient jdbcClient;
+  private final DataSource dataSource;
+  private final ObjectReader snapshotReader;
+  private final EntityVersions versions;
+  private final ConcurrentLongSet knownUserIds = new ConcurrentLongSet();
+  private long removals;
+
+  public UserReplicaService(
+      JdbcClient jdbcClient,
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      EntityVersions versions) {
 
-  public UserReplicaService(JdbcClient jdbcClient) {
     this.jdbcClient = jdbcClient;
+    this.dataSource = dataSource;
+    this.snapshotReader = objectMapper.reader();
+    this.versions = versions;
+    versions.onChange(this::onVersionChange);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadKnownUserIds() {
+    try {
+      for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+        long seenRemovals = removals();
+        LongStream.Builder ids = LongStream.builder();
+        jdbcClient.sql("SELECT id FROM users")
+            .query(rs -> {
+              ids.add(rs.getLong("id"));
+            });
+        if (addAllIfUnchanged(ids.build().toArray(), seenRemovals)) {
+          return;
+        }
+      }
+      log.warn("Users kept being deleted while loading the known user ids, they will be resolved on demand");
+    } catch (DataAccessException e) {
+      log.warn("Could not preload the known user ids, users will be resolved on demand", e);
+    }
+  }
+
+  /**
+   * Throws {@link UserNotFoundException} unless the user is in the replica; known ids are answered from memory.
+   */
+  public void requireUser(Long userId) {
+    if (knownUserIds.contains(userId)) {
+      return;
+    }
+
+    long seenRemovals = removals();
+    boolean exists = jdbcClient.sql("SELECT EXISTS (SELECT 1 FROM users WHERE id = :id)")
+        .param("id", userId)
+        .query(Boolean.class)
+        .single();
+    if (!exists) {
+      throw new UserNotFoundException();
+    }
+    addIfUnchanged(userId, seenRemovals);
+  }
+
+  private synchronized long removals() {
+    return removals;
+  }
+
+  private synchronized boolean addAllIfUnchanged(long[] userIds, long seenRemovals) {
+    if (removals != seenRemovals) {
+      return false;
+    }
+    knownUserIds.addAll(userIds);
+    return true;
+  }
+
+  private synchronized void addIfUnchanged(long userId, long seenRemovals) {
+    if (removals == seenRemovals) {
+      knownUserIds.add(userId);
+    }
+  }
+
+  // ids of a transaction's rows become known only once it commits, so a rollback leaves none behind
+  private void rememberAfterCommit(long[] userIds, long seenRemovals) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      addAllIfUnchanged(userIds, seenRemovals);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        addAllIfUnchanged(userIds, seenRemovals);
+      }
+    });
+  }
+
+  private synchronized void forget(long userId) {
+    removals++;
+    knownUserIds.remove(userId);
+  }
+
+  private void onVersionChange(String scope) {
+    if (scope.startsWith(USER_SCOPE_PREFIX)) {
+      forget(Long.parseLong(scope.substring(USER_SCOPE_PREFIX.length())));
+    }
   }
 
   public User getUserById(Long userId) {
     Optional<User> userOpt = jdbcClient.sql("SELECT id, public_id AS publicId, roles FROM users WHERE id = :id")
         .param("id", userId)
-        .query(User.class)
+        .query(USER_MAPPER)
         .optional();
 
     return userOpt.orElseThrow(UserNotFoundException::new);
   }
 
-  public void addUser(UserData userData) {
-    jdbcClient.sql("INSERT INTO users (id, public_id, roles) VALUES (:id, :publicId, :roles) ON CONFLICT (id) DO NOTHING")
+  public void addUser(UserData userData, Timestamp eventAt) {
+    // a create that arrives after the user's deletion must not bring the user back
+    int written = jdbcClient.sql("""
+            INSERT INTO users (id, public_id, roles, last_event_at)
+            SELECT :id, :publicId, :roles, CAST(:eventAt AS TIMESTAMPTZ)
+            WHERE NOT EXISTS (SELECT 1 FROM deleted_users d WHERE d.id = :id AND d.deleted_at >= :eventAt)
+            ON CONFLICT (id) DO UPDATE
+            SET public_id = EXCLUDED.public_id, roles = EXCLUDED.roles, last_event_at = EXCLUDED.last_event_at
+            WHERE %s
+            """.formatted(NEWER_EVENT))
         .param("id", userData.id())
         .param("publicId", userData.publicId())
         .param("roles", userData.roles())
+        .param("eventAt", eventAt)
         .update();
+    if (written > 0) {
+      knownUserIds.add(userData.id());
+    }
   }
 
-  public void updateUserRoles(UserData userData) {
-    jdbcClient.sql("UPDATE users SET roles = :roles WHERE id = :id")
+  public void updateUserRoles(UserData userData, Timestamp eventAt) {
+    jdbcClient.sql("UPDATE users SET roles = :roles, last_event_at = :eventAt WHERE id = :id AND " + NEWER_EVENT)
         .param("id", userData.id())
         .param("roles", userData.roles())
+        .param("eventAt", eventAt)
         .update();
   }
 
-  public void deleteUser(Long id) {
-    jdbcClient.sql("DELETE FROM users WHERE id = :id")
+  @Transactional
+  public void deleteUser(Long id, Timestamp eventAt) {
+    jdbcClient.sql("""
+            INSERT INTO deleted_users (id, deleted_at)
+            VALUES (:id, COALESCE(CAST(:eventAt AS TIMESTAMPTZ), now()))
+            ON CONFLICT (id) DO UPDATE SET deleted_at = GREATEST(deleted_users.deleted_at, EXCLUDED.deleted_at)
+            """)
+        .param("id", id)
+        .param("eventAt", eventAt)
+        .update();
+
+    // a delete that predates the last applied event belongs to an earlier incarnation of the user
+    int deleted = jdbcClient.sql("""
+            DELETE FROM users
+            WHERE id = :id
+              AND (last_event_at IS NULL OR CAST(:eventAt AS TIMESTAMPTZ) IS NULL OR last_event_at <= :eventAt)
+            """)
         .param("id", id)
+        .param("eventAt", eventAt)
+        .update();
+    if (deleted > 0) {
+      forget(id);
+      versions.bump(EntityVersions.user(id));
+    }
+  }
+
+  /**
+   * Applies a folded batch of user events: deletions first, so users re-created within the batch
+   * start clean, then inserts and role updates, each as a single multi-row statement guarded by
+   * the same event ordering as the single-event methods.
+   */
+  @Transactional
+  public void applyBatch(List<UserEvent> deletions, List<UserEvent> upserts, List<UserEvent> roleUpdates) {
+    if (!deletions.isEmpty()) {
+      jdbcClient.sql("""
+              INSERT INTO deleted_users (id, deleted_at)
+              SELECT v.id, COALESCE(v.event_at, now())
+              FROM unnest(CAST(:ids AS BIGINT[]), CAST(:eventAts AS TIMESTAMPTZ[])) AS v(id, event_at)
+              ON CONFLICT (id) DO UPDATE SET deleted_at = GREATEST(deleted_users.deleted_at, EXCLUDED.deleted_at)
+              """)
+          .param("ids", ids(deletions))
+          .param("eventAts", eventAts(deletions))
+          .update();
+
+      List<Long> deleted = jdbcClient.sql("""
+              DELETE FROM users AS u
+              USING unnest(CAST(:ids AS BIGINT[]), CAST(:eventAts AS TIMESTAMPTZ[])) AS v(id, event_at)
+              WHERE u.id = v.id
+                AND (u.last_event_at IS NULL OR v.event_at IS NULL OR u.last_event_at <= v.event_at)
+              RETURNING u.id
+              """)
+          .param("ids", ids(deletions))
+          .param("eventAts", eventAts(deletions))
+          .query(Long.class)
+          .list();
+      if (!deleted.isEmpty()) {
+        deleted.forEach(this::forget);
+        versions.bump(deleted.stream().map(EntityVersions::user).toArray(String[]::new));
+      }
+    }
+
+    if (!upserts.isEmpty()) {
+      long seenRemovals = removals();
+      List<Long> written = jdbcClient.sql("""
+              INSERT INTO users (id, public_id, roles, last_event_at)
+              SELECT v.id, v.public_id, v.roles, v.event_at
+              FROM unnest(
+                CAST(:ids AS BIGINT[]),
+                CAST(:publicIds AS TEXT[]),
+                CAST(:roles AS TEXT[]),
+                CAST(:eventAts AS TIMESTAMPTZ[])) AS v(id, public_id, roles, event_at)
+              WHERE NOT EXISTS (SELECT 1 FROM deleted_users d WHERE d.id = v.id AND d.deleted_at >= v.event_at)
+              ON CONFLICT (id) DO UPDATE
+              SET public_id = EXCLUDED.public_id, roles = EXCLUDED.roles, last_event_at = EXCLUDED.last_event_at
+              WHERE users.last_event_at IS NULL OR EXCLUDED.last_event_at IS NULL
+                OR users.last_event_at < EXCLUDED.last_event_at
+              RETURNING id
+              """)
+          .param("ids", ids(upserts))
+          .param("publicIds", upserts.stream().map(event -> event.user().publicId()).toArray(String[]::new))
+          .param("roles", upserts.stream().map(event -> event.user().roles()).toArray(String[]::new))
+          .param("eventAts", eventAts(upserts))
+          .query(Long.class)
+          .list();
+      rememberAfterCommit(written.stream().mapToLong(Long::longValue).toArray(), seenRemovals);
+    }
+
+    if (!roleUpdates.isEmpty()) {
+      jdbcClient.sql("""
+              UPDATE users AS u
+              SET roles = v.roles, last_event_at = v.event_at
+              FROM unnest(CAST(:ids AS BIGINT[]), CAST(:roles AS TEXT[]), CAST(:eventAts AS TIMESTAMPTZ[]))
+                AS v(id, roles, event_at)
+              WHERE u.id = v.id
+                AND (u.last_event_at IS NULL OR v.event_at IS NULL OR u.last_event_at < v.event_at)
+              """)
+          .param("ids", ids(roleUpdates))
+          .param("roles", roleUpdates.stream().map(event -> event.user().roles()).toArray(String[]::new))
+          .param("eventAts", eventAts(roleUpdates))
+          .update();
+    }
+  }
+
+  /**
+   * Replaces the replica with a user-service snapshot taken at {@code snapshotAt}: the snapshot is
+   * bulk loaded with {@code COPY}, users missing from it are deleted and the rest are upserted,
+   * except rows already moved past the snapshot point by newer events. Events published before the
+   * snapshot point become no-ops, so consumption can resume from wherever the queue stands.
+   * <p>
+   * Peer instances keep consuming during the import. Their deletions record a tombstone first, and
+   * the import holds a share lock on the tombstones, so a deletion either commits before the import
+   * reads them or waits for the import and then deletes the imported row; users deleted past the
+   * snapshot point are never brought back.
+   */
+  @Transactional
+  public UserSnapshotImport importSnapshot(InputStream ndjson, Instant snapshotAt) {
+    jdbcClient.sql("LOCK TABLE deleted_users IN SHARE MODE").update();
+    jdbcClient.sql("""
+            CREATE TEMP TABLE users_snapshot (
+                id        BIGINT PRIMARY KEY,
+                public_id TEXT NOT NULL,
+                roles     TEXT NOT NULL
+            ) ON COMMIT DROP
+            """)
         .update();
+
+    long[] importedIds = copySnapshot(ndjson);
+    jdbcClient.sql("ANALYZE users_snapshot").update();
+
+    Timestamp snapshotTimestamp = Timestamp.from(snapshotAt);
+    List<Long> removed = jdbcClient.sql("""
+            DELETE FROM users AS u
+            WHERE NOT EXISTS (SELECT 1 FROM users_snapshot s WHERE s.id = u.id)
+              AND (u.last_event_at IS NULL OR u.last_event_at <= :snapshotAt)
+            RETURNING u.id
+            """)
+        .param("snapshotAt", snapshotTimestamp)
+        .query(Long.class)
+        .list();
+
+    Set<Long> deletedSince = jdbcClient.sql("""
+            SELECT d.id
+            FROM deleted_users d
+            JOIN users_snapshot s ON s.id = d.id
+            WHERE d.deleted_at > :snapshotAt
+            """)
+        .param("snapshotAt", snapshotTimestamp)
+        .query(Long.class)
+        .set();
+
+    jdbcClient.sql("""
+            INSERT INTO users (id, public_id, roles, last_event_at)
+            SELECT id, public_id, roles, :snapshotAt
+            FROM users_snapshot s
+            WHERE NOT EXISTS (SELECT 1 FROM deleted_users d WHERE d.id = s.id AND d.deleted_at > :snapshotAt)
+            ON CONFLICT (id) DO UPDATE
+            SET public_id = EXCLUDED.public_id, roles = EXCLUDED.roles, last_event_at = EXCLUDED.last_event_at
+            WHERE users.last_event_at IS NULL OR users.last_event_at < EXCLUDED.last_event_at
+            """)
+        .param("snapshotAt", snapshotTimestamp)
+        .update();
+
+    // the snapshot already reflects every deletion up to its point
+    jdbcClient.sql("DELETE FROM deleted_users WHERE deleted_at <= :snapshotAt")
+        .param("snapshotAt", snapshotTimestamp)
+        .update();
+
+    if (!removed.isEmpty()) {
+      removed.forEach(this::forget);
+      versions.bump(removed.stream().map(EntityVersions::user).toArray(String[]::new));
+    }
+    long seenRemovals = removals();
+    long[] restoredIds = LongStream.of(importedIds).filter(id -> !deletedSince.contains(id)).toArray();
+    rememberAfterCommit(restoredIds, seenRemovals);
+    return new UserSnapshotImport(restoredIds.length, removed.size(), snapshotAt);
+  }
+
+  private long[] copySnapshot(InputStream ndjson) {
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      var copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+      return UserSnapshotCopy.copy(copyManager, "users_snapshot", snapshotReader, ndjson);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Could not copy the user snapshot", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+  }
+
+  private static Long[] ids(List<UserEvent> events) {
+    return events.stream().map(event -> event.user().id()).toArray(Long[]::new);
+  }
+
+  // sent as ISO-8601 text, which the driver can bind as an array and Postgres casts to timestamptz
+  private static String[] eventAts(List<UserEvent> events) {
+    return events.stream()
+        .map(event -> event.eventAt() != null ? event.eventAt().toInstant().toString() : null)
+        .toArray(String[]::new);
   }
 }
@@ -0,0 +1,81 @@
+package org.protu.contentservice.progress;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.stream.LongStream;
+
+/**
+ * Feeds an NDJSON user snapshot into a {@code COPY ... FROM STDIN} in Postgres text format, parsing
+ * and sending one chunk at a time so the snapshot is never held in memory.
+ */
+final class UserSnapshotCopy {
+
+  private static final int CHUNK_CHARS = 64 * 1024;
+
+  private UserSnapshotCopy() {
+  }
+
+  /**
+   * Copies every user in {@code ndjson} into {@code table (id, public_id, roles)} and returns their ids.
+   */
+  static long[] copy(CopyManager copyManager, String table, ObjectReader userReader, InputStream ndjson)
+      throws SQLException, IOException {
+
+    CopyIn copyIn = copyManager.copyIn("COPY " + table + " (id, public_id, roles) FROM STDIN");
+    LongStream.Builder ids = LongStream.builder();
+    StringBuilder chunk = new StringBuilder(CHUNK_CHARS + 256);
+    try (MappingIterator<UserData> users = userReader.forType(UserData.class).readValues(ndjson)) {
+      while (users.hasNextValue()) {
+        UserData user = users.nextValue();
+        ids.add(user.id());
+        chunk.append(user.id()).append('\t');
+        appendField(chunk, user.publicId());
+        chunk.append('\t');
+        appendField(chunk, user.roles());
+        chunk.append('\n');
+        if (chunk.length() >= CHUNK_CHARS) {
+          write(copyIn, chunk);
+        }
+      }
+      write(copyIn, chunk);
+      copyIn.endCopy();
+    } finally {
+      if (copyIn.isActive()) {
+        copyIn.cancelCopy();
+      }
+    }
+    return ids.build().toArray();
+  }
+
+  private static void write(CopyIn copyIn, StringBuilder chunk) throws SQLException {
+    byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+    copyIn.writeToCopy(bytes, 0, bytes.length);
+    chunk.setLength(0);
+  }
+
+  // text format: backslash, tab and line breaks are escaped, null is \N
+  static void appendField(StringBuilder row, String value) {
+    if (value == null) {
+      row.append("\\N");
+      return;
+    }
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\' -> row.append("\\\\");
+        case '\t' -> row.append("\\t");
+        case '\n' -> row.append("\\n");
+        case '\r' -> row.append("\\r");
+        default -> row.append(c);
+      }
+    }
+  }
+}
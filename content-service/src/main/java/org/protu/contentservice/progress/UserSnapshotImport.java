@@ -0,0 +1,6 @@
+package org.protu.contentservice.progress;
+
+import java.time.Instant;
+
+public record UserSnapshotImport(Integer importedUsers, Integer removedUsers, Instant snapshotAt) {
+}
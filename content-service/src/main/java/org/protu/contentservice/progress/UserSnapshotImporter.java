@@ -0,0 +1,89 @@
+package org.protu.contentservice.progress;
+
+import org.protu.contentservice.common.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds the user replica from a user-service snapshot instead of replaying every user event.
+ * <p>
+ * The user-event listeners of this instance are stopped while the snapshot streams in; peer
+ * instances keep consuming, and the import orders itself against their writes by event time and
+ * deletion tombstones (see {@link UserReplicaService#importSnapshot}). The snapshot point is
+ * backdated by the configured clock skew: events racing the export are then replayed over the
+ * snapshot instead of being discarded as stale.
+ */
+@Component
+public class UserSnapshotImporter {
+
+  private static final Logger log = LoggerFactory.getLogger(UserSnapshotImporter.class);
+  private static final String SNAPSHOT_AT_HEADER = "X-Snapshot-At";
+
+  private final UserReplicaService userReplicaService;
+  private final RabbitListenerEndpointRegistry listeners;
+  private final RestClient restClient;
+  private final String snapshotUrl;
+  private final Duration clockSkew;
+
+  public UserSnapshotImporter(
+      UserReplicaService userReplicaService,
+      RabbitListenerEndpointRegistry listeners,
+      RestClient.Builder restClientBuilder,
+      AppProperties props) {
+
+    this.userReplicaService = userReplicaService;
+    this.listeners = listeners;
+    this.restClient = restClientBuilder.build();
+    this.snapshotUrl = props.replica().snapshot().url();
+    this.clockSkew = props.replica().snapshot().clockSkew();
+  }
+
+  public UserSnapshotImport rebuildReplica(String bearerToken) {
+    List<MessageListenerContainer> stopped = stopUserEventListeners();
+    try {
+      UserSnapshotImport result = restClient.get()
+          .uri(snapshotUrl)
+          .header(HttpHeaders.AUTHORIZATION, bearerToken)
+          .accept(MediaType.APPLICATION_NDJSON)
+          .exchange((request, response) -> {
+            if (response.getStatusCode().isError()) {
+              throw new RestClientResponseException(
+                  "User snapshot export failed", response.getStatusCode(), response.getStatusText(),
+                  response.getHeaders(), null, null);
+            }
+            Instant snapshotAt = Instant.parse(response.getHeaders().getFirst(SNAPSHOT_AT_HEADER)).minus(clockSkew);
+            return userReplicaService.importSnapshot(response.getBody(), snapshotAt);
+          });
+      log.info("Rebuilt the user replica: {} users imported, {} removed, resuming events from {}",
+          result.importedUsers(), result.removedUsers(), result.snapshotAt());
+      return result;
+    } finally {
+      stopped.forEach(MessageListenerContainer::start);
+    }
+  }
+
+  private List<MessageListenerContainer> stopUserEventListeners() {
+    List<MessageListenerContainer> stopped = new ArrayList<>();
+    for (String id : List.of(UserEventsConsumer.LISTENER_ID, UserEventsConsumer.BATCH_LISTENER_ID)) {
+      MessageListenerContainer container = listeners.getListenerContainer(id);
+      if (container != null && container.isRunning()) {
+        // waits for in-flight deliveries, so this instance applies no event concurrently with the import
+        container.stop();
+        stopped.add(container);
+      }
+    }
+    return stopped;
+  }
+}
@@ -1,16 +1,27 @@
 package org.protu.contentservice.track;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.protu.contentservice.common.enums.SuccessMessage;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.pagination.PageQuery;
 import org.protu.contentservice.common.properties.AppProperties;
 import org.protu.contentservice.common.response.ApiResponse;
+import org.protu.contentservice.common.response.CachedResponseBodies;
+import org.protu.contentservice.common.response.NdjsonResponses;
+import org.protu.contentservice.common.response.PrecompressedJsonResponses;
 import org.protu.contentservice.course.Course;
 import org.protu.contentservice.course.CourseDto;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
 import static org.protu.contentservice.common.response.ApiResponseBuilder.buildSuccessApiResponse;
@@ -21,24 +32,81 @@ public class TrackController {
 
   private final TrackService trackService;
   private final String apiVersion;
+  private final EntityVersions versions;
+  private final CachedResponseBodies responseBodies;
+  private final NdjsonResponses ndjsonResponses;
+
+  public TrackController(
+      TrackService trackService,
+      AppProperties properties,
+      EntityVersions versions,
+      CachedResponseBodies responseBodies,
+      NdjsonResponses ndjsonResponses) {
 
-  public TrackController(TrackService trackService, AppProperties properties) {
     this.trackService = trackService;
     this.apiVersion = properties.api().version();
+    this.versions = versions;
+    this.responseBodies = responseBodies;
+    this.ndjsonResponses = ndjsonResponses;
   }
 
   @GetMapping
-  public ResponseEntity<ApiResponse<List<TrackWithCourses>>> getAllTracks(HttpServletRequest request) {
-    List<TrackWithCourses> tracks = trackService.getAllTracks();
+  public ResponseEntity<ApiResponse<List<TrackWithCourses>>> getAllTracks(
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+      WebRequest webRequest,
+      HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+
+    boolean gzip = responseBodies.servesGzip(acceptEncoding);
+    String etag = versions.etag(EntityVersions.TRACKS, EntityVersions.COURSES);
+    if (webRequest.checkNotModified(gzip ? EntityVersions.variant(etag, "gzip") : etag)) {
+      return null;
+    }
+
     final String message = SuccessMessage.GET_ALL_ENTITIES.getMessage("Tracks");
+    if (responseBodies.isEnabled()) {
+      var envelope = buildSuccessApiResponse(message, PrecompressedJsonResponses.PLACEHOLDER, HttpStatus.OK, apiVersion, request);
+      responseBodies.write("tracks", etag, trackService::loadAllTracks, envelope, gzip, response);
+      return null;
+    }
+
+    List<TrackWithCourses> tracks = trackService.getAllTracks();
     return buildSuccessApiResponse(message, tracks, HttpStatus.OK, apiVersion, request);
   }
 
+  @GetMapping(params = "format=ndjson")
+  public ResponseEntity<StreamingResponseBody> streamAllTracks() {
+    return ndjsonResponses.stream(trackService::streamAllTracks);
+  }
+
+  @GetMapping(params = "size")
+  public ResponseEntity<ApiResponse<KeysetPage<TrackWithCourses>>> getTracksPage(
+      @RequestParam int size,
+      @RequestParam(defaultValue = "id") String sort,
+      @RequestParam(required = false) String prefix,
+      @RequestParam(required = false) String cursor,
+      WebRequest webRequest,
+      HttpServletRequest request) {
+
+    if (webRequest.checkNotModified(versions.etag(EntityVersions.TRACKS, EntityVersions.COURSES))) {
+      return null;
+    }
+
+    KeysetPage<TrackWithCourses> page = trackService.getTracksPage(PageQuery.of(sort, prefix, cursor, size));
+    final String message = SuccessMessage.GET_ALL_ENTITIES.getMessage("Tracks");
+    return buildSuccessApiResponse(message, page, HttpStatus.OK, apiVersion, request);
+  }
+
   @GetMapping("/{trackName}")
   public ResponseEntity<ApiResponse<TrackWithCourses>> getSingleTrack(
       @PathVariable String trackName,
+      WebRequest webRequest,
       HttpServletRequest request) {
 
+    if (webRequest.checkNotModified(versions.etag(EntityVersions.track(trackName), EntityVersions.COURSES))) {
+      return null;
+    }
+
     TrackWithCourses trackResponse = trackService.getTrackByName(trackName);
     final String message = SuccessMessage.GET_SINGLE_ENTITY.getMessage("Track");
     return buildSuccessApiResponse(message, trackResponse, HttpStatus.OK, apiVersion, request);
@@ -74,8 +142,13 @@ public class TrackController {
   @GetMapping("/{trackName}/courses")
   public ResponseEntity<ApiResponse<List<CourseDto>>> getAllCoursesForTrack(
       @PathVariable String trackName,
+      WebRequest webRequest,
       HttpServletRequest request) {
 
+    if (webRequest.checkNotModified(versions.etag(EntityVersions.track(trackName), EntityVersions.COURSES))) {
+      return null;
+    }
+
     List<CourseDto> courses = trackService.getAllCoursesForTrack(trackName);
     final String message = SuccessMessage.GET_ALL_ENTITIES.getMessage("Courses");
     return buildSuccessApiResponse(message, courses, HttpStatus.OK, apiVersion, request);
@@ -1,14 +1,19 @@
 package org.protu.contentservice.track;
 
 import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.common.index.EntityIdIndex;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.pagination.PageQuery;
+import org.protu.contentservice.common.pagination.PageSort;
 import org.protu.contentservice.course.CourseDto;
 import org.protu.contentservice.course.CourseRepository;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 
-import java.sql.ResultSet;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 public class TrackRepository {
@@ -25,15 +30,59 @@ public class TrackRepository {
     String courseName = rs.getString("course_name");
     String courseDescription = rs.getString("course_desc");
     String coursePicUrl = rs.getString("course_pic");
-    return new CourseDto(courseId, courseName, courseDescription, coursePicUrl);
+    int courseLessonCount = rs.getInt("course_lesson_count");
+    return new CourseDto(courseId, courseName, courseDescription, coursePicUrl, courseLessonCount);
+  };
+
+  private static final RowMapper<Track> TRACK_ROW_MAPPER = (rs, rowNum) -> new Track(
+      rs.getInt(1),
+      rs.getString(2),
+      rs.getString(3)
+  );
+
+  private static final String FIND_ALL_SQL = """
+      SELECT
+          t.id AS track_id,
+          t.name AS track_name,
+          t.description AS track_desc,
+          c.id AS course_id,
+          c.name AS course_name,
+          c.description AS course_desc,
+          c.pic_url AS course_pic,
+          c.lesson_count AS course_lesson_count
+      FROM tracks t
+      LEFT JOIN tracks_courses tc ON tc.track_id = t.id
+      LEFT JOIN courses c ON c.id = tc.course_id
+      ORDER BY t.id
+      """;
+
+  private static final int STREAM_CHUNK_SIZE = PageQuery.MAX_SIZE;
+
+  private static final ResultSetExtractor<List<TrackWithCourses>> TRACKS_WITH_COURSES = rs -> {
+    Map<Integer, TrackWithCourses> map = new LinkedHashMap<>();
+
+    while (rs.next()) {
+      int trackId = rs.getInt("track_id");
+      if (!map.containsKey(trackId)) {
+        map.put(trackId, TRACK_MAPPER.mapRow(rs, rs.getRow()));
+      }
+
+      Integer courseId = rs.getObject("course_id", Integer.class);
+      if (courseId != null) {
+        CourseDto course = COURSE_MAPPER.mapRow(rs, rs.getRow());
+        map.get(trackId).courses().add(course);
+      }
+    }
+
+    return new ArrayList<>(map.values());
   };
 
   private final JdbcClient jdbcClient;
-  private final CourseRepository courses;
+  private final EntityIdIndex ids;
 
-  public TrackRepository(JdbcClient jdbcClient, CourseRepository courses) {
+  public TrackRepository(JdbcClient jdbcClient, EntityIdIndex ids) {
     this.jdbcClient = jdbcClient;
-    this.courses = courses;
+    this.ids = ids;
   }
 
   private Track findByNameOrThrow(String trackName) {
@@ -47,13 +96,40 @@ public class TrackRepository {
               WHERE t.name = :name
             """)
         .param("name", trackName)
-        .query(Track.class)
+        .query(TRACK_ROW_MAPPER)
         .optional()
         .orElseThrow(() -> new EntityNotFoundException("Track", trackName));
   }
 
   public Optional<List<TrackWithCourses>> findAll() {
+    return Optional.of(jdbcClient
+        .sql(FIND_ALL_SQL)
+        .query(TRACKS_WITH_COURSES));
+  }
+
+  /**
+   * Hands each track to {@code sink} in id order, reading {@value #STREAM_CHUNK_SIZE} tracks per
+   * keyset-paged statement. No connection is held while {@code sink} runs, so a slow consumer only
+   * delays the next chunk; the listing is not a single snapshot across chunks.
+   */
+  public void streamAll(Consumer<TrackWithCourses> sink) {
+    String cursor = null;
+    do {
+      KeysetPage<TrackWithCourses> page = findPage(new PageQuery(PageSort.ID, null, cursor, STREAM_CHUNK_SIZE));
+      page.items().forEach(sink);
+      cursor = page.nextCursor();
+    } while (cursor != null);
+  }
+
+  public KeysetPage<TrackWithCourses> findPage(PageQuery query) {
     String sql = """
+            WITH page AS (
+              SELECT id, name, description
+              FROM tracks
+              WHERE %s
+              ORDER BY %s
+              LIMIT :limit
+            )
             SELECT
                 t.id AS track_id,
                 t.name AS track_name,
@@ -61,33 +137,24 @@ public class TrackRepository {
                 c.id AS course_id,
                 c.name AS course_name,
                 c.description AS course_desc,
-                c.pic_url AS course_pic
-            FROM tracks t
+                c.pic_url AS course_pic,
+                c.lesson_count AS course_lesson_count
+            FROM page t
             LEFT JOIN tracks_courses tc ON tc.track_id = t.id
             LEFT JOIN courses c ON c.id = tc.course_id
-            ORDER BY t.id
-        """;
+            ORDER BY t.%s
+        """.formatted(query.whereClause(), query.sort().column(), query.sort().column());
 
-    return Optional.of(jdbcClient
-        .sql(sql)
-        .query(rs -> {
-          Map<Integer, TrackWithCourses> map = new LinkedHashMap<>();
-
-          while (rs.next()) {
-            int trackId = rs.getInt("track_id");
-            if (!map.containsKey(trackId)) {
-              map.put(trackId, TRACK_MAPPER.mapRow(rs, rs.getRow()));
-            }
-
-            Integer courseId = rs.getObject("course_id", Integer.class);
-            if (courseId != null) {
-              CourseDto course = COURSE_MAPPER.mapRow(rs, rs.getRow());
-              map.get(trackId).courses().add(course);
-            }
-          }
-
-          return new ArrayList<>(map.values());
-        }));
+    JdbcClient.StatementSpec statement = jdbcClient.sql(sql).param("limit", query.size() + 1);
+    if (query.prefix() != null) {
+      statement = statement.param("prefix", query.likePattern());
+    }
+    if (query.cursor() != null) {
+      statement = statement.param("after", query.after());
+    }
+
+    List<TrackWithCourses> rows = statement.query(TRACKS_WITH_COURSES);
+    return KeysetPage.of(rows, query.size(), track -> query.sort().cursorOf(track.id(), track.name()));
   }
 
   public Optional<TrackWithCourses> findByName(String trackName) {
@@ -99,7 +166,8 @@ public class TrackRepository {
                 c.id AS course_id,
                 c.name AS course_name,
                 c.description AS course_desc,
-                c.pic_url AS course_pic
+                c.pic_url AS course_pic,
+                c.lesson_count AS course_lesson_count
             FROM tracks t
             LEFT JOIN tracks_courses tc ON tc.track_id = t.id
             LEFT JOIN courses c ON c.id = tc.course_id
@@ -109,24 +177,7 @@ public class TrackRepository {
     List<TrackWithCourses> results = jdbcClient
         .sql(sql)
         .param("name", trackName)
-        .query((ResultSet rs) -> {
-          Map<Integer, TrackWithCourses> map = new LinkedHashMap<>();
-
-          while (rs.next()) {
-            int trackId = rs.getInt("track_id");
-            if (!map.containsKey(trackId)) {
-              map.put(trackId, TRACK_MAPPER.mapRow(rs, rs.getRow()));
-            }
-
-            Integer courseId = rs.getObject("course_id", Integer.class);
-            if (courseId != null) {
-              CourseDto course = COURSE_MAPPER.mapRow(rs, rs.getRow());
-              map.get(trackId).courses().add(course);
-            }
-          }
-
-          return new ArrayList<>(map.values());
-        });
+        .query(TRACKS_WITH_COURSES);
 
     return results.stream().findFirst();
   }
@@ -181,39 +232,59 @@ public class TrackRepository {
                 c.id,
                 c.name,
                 c.description,
-                c.pic_url AS picUrl
+                c.pic_url,
+                c.lesson_count
               FROM courses AS c
               JOIN tracks_courses AS tc ON tc.course_id = c.id
               WHERE tc.track_id = :trackId
             """)
         .param("name", trackName)
         .param("trackId", track.id())
-        .query(CourseDto.class)
+        .query(CourseRepository.SUMMARY_MAPPER)
         .list());
   }
 
+  // ids come from the index; a statement that matched nothing re-reads both names once, as a stale
+  // id and an already present (or absent) link look the same
   public void addCourseToTrack(String trackName, String courseName) {
-    Track track = findByNameOrThrow(trackName);
-    CourseDto course = courses.findByNameOrThrow(courseName);
+    int trackId = ids.trackId(trackName);
+    int courseId = ids.courseId(courseName);
+    if (linkCourse(trackId, courseId) == 0 && idsChanged(trackName, trackId, courseName, courseId)) {
+      linkCourse(ids.trackId(trackName), ids.courseId(courseName));
+    }
+  }
 
-    jdbcClient.sql("""
+  public void deleteCourseFromTrack(String trackName, String courseName) {
+    int trackId = ids.trackId(trackName);
+    int courseId = ids.courseId(courseName);
+    if (unlinkCourse(trackId, courseId) == 0 && idsChanged(trackName, trackId, courseName, courseId)) {
+      unlinkCourse(ids.trackId(trackName), ids.courseId(courseName));
+    }
+  }
+
+  private int linkCourse(int trackId, int courseId) {
+    return jdbcClient.sql("""
             INSERT INTO tracks_courses (track_id, course_id)
-            VALUES (:trackId, :courseId)
+            SELECT t.id, c.id
+            FROM tracks AS t, courses AS c
+            WHERE t.id = :trackId AND c.id = :courseId
             ON CONFLICT (track_id, course_id)
             DO NOTHING
             """)
-        .param("trackId", track.id())
-        .param("courseId", course.id())
+        .param("trackId", trackId)
+        .param("courseId", courseId)
         .update();
   }
 
-  public void deleteCourseFromTrack(String trackName, String courseName) {
-    Track track = findByNameOrThrow(trackName);
-    CourseDto course = courses.findByNameOrThrow(courseName);
-
-    jdbcClient.sql("DELETE FROM tracks_courses WHERE track_id = :trackId AND course_id = :courseId")
-        .param("trackId", track.id())
-        .param("courseId", course.id())
+  private int unlinkCourse(int trackId, int courseId) {
+    return jdbcClient.sql("DELETE FROM tracks_courses WHERE track_id = :trackId AND course_id = :courseId")
+        .param("trackId", trackId)
+        .param("courseId", courseId)
         .update();
   }
+
+  private boolean idsChanged(String trackName, int trackId, String courseName, int courseId) {
+    boolean trackChanged = ids.trackIdChanged(trackName, trackId);
+    return ids.courseIdChanged(courseName, courseId) || trackChanged;
+  }
 }
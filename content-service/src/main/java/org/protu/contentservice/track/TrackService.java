@@ -1,6 +1,9 @@
 package org.protu.contentservice.track;
 
+import org.protu.contentservice.common.etag.EntityVersions;
 import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.common.pagination.KeysetPage;
+import org.protu.contentservice.common.pagination.PageQuery;
 import org.protu.contentservice.course.CourseDto;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -9,6 +12,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class TrackService {
@@ -16,24 +20,47 @@ public class TrackService {
   private static final String CACHE_ALL_TRACK_LIST = "all-tracks-list";
   private static final String CACHE_TRACK_DETAILS = "track-details";
   private static final String CACHE_TRACK_COURSES = "track-courses";
+  private static final String CACHE_TRACK_PAGES = "track-pages";
   private final TrackRepository tracks;
+  private final EntityVersions versions;
 
-  public TrackService(TrackRepository tracks) {
+  public TrackService(TrackRepository tracks, EntityVersions versions) {
     this.tracks = tracks;
+    this.versions = versions;
   }
 
   @Transactional
-  @CacheEvict(value = CACHE_ALL_TRACK_LIST, allEntries = true)
+  @Caching(evict = {
+      @CacheEvict(value = CACHE_ALL_TRACK_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true)
+  })
   public void createTrackIfNotExists(TrackRequest trackRequest) {
     tracks.add(trackRequest);
+    versions.bump(EntityVersions.TRACKS, EntityVersions.track(trackRequest.name()));
   }
 
   @Transactional(readOnly = true)
-  @Cacheable(cacheNames = CACHE_ALL_TRACK_LIST, key = "'all-tracks'")
+  @Cacheable(cacheNames = CACHE_ALL_TRACK_LIST, key = "'all-tracks'", sync = true)
   public List<TrackWithCourses> getAllTracks() {
     return tracks.findAll().orElse(null);
   }
 
+  // for callers that cache per entity version: skips the listing cache and, not being read-only, the replicas
+  public List<TrackWithCourses> loadAllTracks() {
+    return tracks.findAll().orElse(null);
+  }
+
+  // not transactional: the repository pages through the listing so no connection outlives a chunk
+  public void streamAllTracks(Consumer<TrackWithCourses> sink) {
+    tracks.streamAll(sink);
+  }
+
+  @Transactional(readOnly = true)
+  @Cacheable(value = CACHE_TRACK_PAGES, key = "#query")
+  public KeysetPage<TrackWithCourses> getTracksPage(PageQuery query) {
+    return tracks.findPage(query);
+  }
+
   @Transactional(readOnly = true)
   @Cacheable(value = CACHE_TRACK_DETAILS, key = "#trackName", unless = "#result == null")
   public TrackWithCourses getTrackByName(String trackName) {
@@ -44,21 +71,25 @@ public class TrackService {
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_TRACK_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_TRACK_DETAILS, key = "#trackName"),
       @CacheEvict(value = CACHE_TRACK_COURSES, key = "#trackName")
   })
   public void updateTrack(String trackName, TrackRequest trackRequest) {
     tracks.update(trackName, trackRequest);
+    versions.bump(EntityVersions.TRACKS, EntityVersions.track(trackName), EntityVersions.track(trackRequest.name()));
   }
 
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_TRACK_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_TRACK_DETAILS, key = "#trackName"),
       @CacheEvict(value = CACHE_TRACK_COURSES, key = "#trackName")
   })
   public void deleteTrack(String trackName) {
     tracks.delete(trackName);
+    versions.bump(EntityVersions.TRACKS, EntityVersions.track(trackName));
   }
 
   @Transactional(readOnly = true)
@@ -70,20 +101,24 @@ public class TrackService {
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_TRACK_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_TRACK_DETAILS, key = "#trackName"),
       @CacheEvict(value = CACHE_TRACK_COURSES, key = "#trackName")
   })
   public void addExistingCourseToTrack(String trackName, String courseName) {
     tracks.addCourseToTrack(trackName, courseName);
+    versions.bump(EntityVersions.TRACKS, EntityVersions.track(trackName));
   }
 
   @Transactional
   @Caching(evict = {
       @CacheEvict(value = CACHE_ALL_TRACK_LIST, allEntries = true),
+      @CacheEvict(value = CACHE_TRACK_PAGES, allEntries = true),
       @CacheEvict(value = CACHE_TRACK_DETAILS, key = "#trackName"),
       @CacheEvict(value = CACHE_TRACK_COURSES, key = "#trackName")
   })
   public void deleteCourseFromTrack(String trackName, String courseName) {
     tracks.deleteCourseFromTrack(trackName, courseName);
+    versions.bump(EntityVersions.TRACKS, EntityVersions.track(trackName));
   }
 }
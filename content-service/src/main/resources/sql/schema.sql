@@ -19,10 +19,12 @@ CREATE TABLE IF NOT EXISTS courses (
     id          SERIAL PRIMARY KEY,
     name        VARCHAR NOT NULL,
     description VARCHAR,
-    pic_url TEXT
+    pic_url TEXT,
+    lesson_count INT NOT NULL DEFAULT 0
 );
 
 ALTER TABLE courses ADD CONSTRAINT courses_name_unique UNIQUE(name);
+ALTER TABLE courses ADD COLUMN IF NOT EXISTS lesson_count INT NOT NULL DEFAULT 0;
 
 CREATE TABLE IF NOT EXISTS tracks_courses (
     track_id     INT NOT NULL REFERENCES tracks(id) ON DELETE CASCADE,
@@ -34,10 +36,12 @@ CREATE TABLE IF NOT EXISTS lessons (
     id          SERIAL PRIMARY KEY,
     name        VARCHAR NOT NULL,
     content     TEXT,
+    content_gzip BYTEA,
     lesson_order INT
 );
 
 ALTER TABLE lessons ADD CONSTRAINT lessons_name_unique UNIQUE(name);
+ALTER TABLE lessons ADD COLUMN IF NOT EXISTS content_gzip BYTEA;
 
 CREATE TABLE IF NOT EXISTS courses_lessons (
     course_id    INT NOT NULL REFERENCES courses(id) ON DELETE CASCADE,
@@ -45,10 +49,23 @@ CREATE TABLE IF NOT EXISTS courses_lessons (
     PRIMARY KEY (course_id, lesson_id)
 );
 
+-- Backfills lesson_count on databases that predate it; afterwards no row has drifted and nothing is rewritten.
+UPDATE courses AS c
+SET lesson_count = (SELECT COUNT(*) FROM courses_lessons AS cl WHERE cl.course_id = c.id)
+WHERE c.lesson_count <> (SELECT COUNT(*) FROM courses_lessons AS cl WHERE cl.course_id = c.id);
+
 CREATE TABLE IF NOT EXISTS users (
     id          SERIAL PRIMARY KEY,
     public_id   CHAR(26) NOT NULL UNIQUE,
-    roles       TEXT NOT NULL
+    roles       TEXT NOT NULL,
+    last_event_at TIMESTAMPTZ
+);
+ALTER TABLE users ADD COLUMN IF NOT EXISTS last_event_at TIMESTAMPTZ;
+
+-- Latest deleted event per user, so a snapshot import does not bring back users deleted after its snapshot point.
+CREATE TABLE IF NOT EXISTS deleted_users (
+    id          BIGINT PRIMARY KEY,
+    deleted_at  TIMESTAMPTZ NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS users_courses (
@@ -63,4 +80,17 @@ CREATE TABLE IF NOT EXISTS users_lessons (
     lesson_id   INT REFERENCES lessons(id) ON DELETE CASCADE,
     is_completed BOOLEAN DEFAULT FALSE,
     PRIMARY KEY (user_id, lesson_id)
-);
\ No newline at end of file
+);
+
+-- Secondary indexes. Primary keys already cover lookups by their leading columns.
+-- Reverse link lookups: lessons to their courses, courses to their tracks; covering, so joins stay index-only.
+CREATE INDEX IF NOT EXISTS courses_lessons_lesson_id_idx ON courses_lessons (lesson_id) INCLUDE (course_id);
+CREATE INDEX IF NOT EXISTS tracks_courses_course_id_idx ON tracks_courses (course_id) INCLUDE (track_id);
+
+-- Cascaded deletes of a course or a lesson reach progress rows by the non-leading key column.
+CREATE INDEX IF NOT EXISTS users_courses_course_id_idx ON users_courses (course_id);
+CREATE INDEX IF NOT EXISTS users_lessons_lesson_id_idx ON users_lessons (lesson_id);
+
+-- Prefix filters of the paged listings; the name uniques follow the collation and cannot serve LIKE.
+CREATE INDEX IF NOT EXISTS courses_name_pattern_idx ON courses (name text_pattern_ops);
+CREATE INDEX IF NOT EXISTS tracks_name_pattern_idx ON tracks (name text_pattern_ops);
@@ -0,0 +1,135 @@
+package org.protu.contentservice.common.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class TwoLevelCacheTests {
+
+  private static final String CACHE_NAME = "course-details";
+
+  private ConcurrentMapCache remote;
+  private TwoLevelCacheManager manager;
+  private TwoLevelCache cache;
+
+  @BeforeEach
+  void setUp() {
+    remote = spy(new ConcurrentMapCache(CACHE_NAME, false));
+    manager = mock(TwoLevelCacheManager.class);
+    cache = new TwoLevelCache(CACHE_NAME, Caffeine.newBuilder().maximumSize(10).build(), remote, manager);
+  }
+
+  @Test
+  void get_shouldServeFromLocalTier_afterFirstRemoteHit() {
+    remote.put("course1", "value");
+
+    assertThat(cache.get("course1", String.class)).isEqualTo("value");
+    assertThat(cache.get("course1", String.class)).isEqualTo("value");
+
+    verify(remote, times(1)).get("course1");
+  }
+
+  @Test
+  void evict_shouldDropBothTiersAndBroadcast() {
+    cache.put("course1", "value");
+
+    cache.evict("course1");
+
+    assertThat(cache.get("course1")).isNull();
+    assertThat(remote.get("course1")).isNull();
+    verify(manager).publishEviction(CACHE_NAME, "course1");
+  }
+
+  @Test
+  void evict_shouldWaitForCommit_insideTransaction() {
+    cache.put("course1", "value");
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      cache.evict("course1");
+      assertThat(cache.get("course1", String.class)).isEqualTo("value");
+      verify(manager, never()).publishEviction(anyString(), anyString());
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertThat(cache.get("course1")).isNull();
+    verify(manager).publishEviction(CACHE_NAME, "course1");
+  }
+
+  @Test
+  void evictLocal_shouldKeepRemoteEntry() {
+    cache.put("course1", "value");
+
+    cache.evictLocal("course1");
+
+    assertThat(cache.get("course1", String.class)).isEqualTo("value");
+    verify(remote, times(1)).get("course1");
+    verify(manager, never()).publishEviction(anyString(), anyString());
+  }
+
+  @Test
+  void getWithLoader_shouldServeStaleValueAndRefreshInBackground() {
+    var refreshAheadCache = new TwoLevelCache(
+        CACHE_NAME, Caffeine.newBuilder().maximumSize(10).build(), remote, manager, 1, Runnable::run);
+    remote.put("course1", new StampedValue("old", 0));
+
+    String served = refreshAheadCache.get("course1", () -> "new");
+
+    assertThat(served).isEqualTo("old");
+    assertThat(refreshAheadCache.get("course1", String.class)).isEqualTo("new");
+  }
+
+  @Test
+  void getWithLoader_shouldNotCacheRefresh_evictedWhileLoading() {
+    var refreshAheadCache = new TwoLevelCache(
+        CACHE_NAME, Caffeine.newBuilder().maximumSize(10).build(), remote, manager, 1, Runnable::run);
+    remote.put("course1", new StampedValue("old", 0));
+
+    refreshAheadCache.get("course1", () -> {
+      refreshAheadCache.evict("course1");
+      return "loaded-before-eviction";
+    });
+
+    assertThat(refreshAheadCache.get("course1")).isNull();
+  }
+
+  @Test
+  void getWithLoader_shouldRunOneLoaderForConcurrentMisses() throws Exception {
+    var loaderCalls = new AtomicInteger();
+    var loaderStarted = new CountDownLatch(1);
+    var releaseLoader = new CountDownLatch(1);
+
+    var first = CompletableFuture.supplyAsync(() -> cache.get("course1", () -> {
+      loaderCalls.incrementAndGet();
+      loaderStarted.countDown();
+      releaseLoader.await();
+      return "value";
+    }));
+    assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+    var second = CompletableFuture.supplyAsync(() -> cache.get("course1", () -> {
+      loaderCalls.incrementAndGet();
+      return "other";
+    }));
+    verify(manager, timeout(5000)).recordCoalescedLoad(CACHE_NAME, "local");
+    releaseLoader.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+    assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+    assertThat(loaderCalls).hasValue(1);
+  }
+}
@@ -0,0 +1,37 @@
+package org.protu.contentservice.common.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.common.config.RedisConfig;
+import org.protu.contentservice.course.CourseWithLessons;
+import org.protu.contentservice.lesson.dto.LessonWithoutContent;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TypedSmileRedisSerializerTests {
+
+  private final ObjectMapper smileMapper = new RedisConfig(null).redisSmileMapper();
+
+  private final List<CourseWithLessons> courses = List.of(
+      new CourseWithLessons(1, "course1", "desc1", null, List.of(new LessonWithoutContent(1, "lesson1", 1))));
+
+  @Test
+  void shouldRoundTripDeclaredType() {
+    var serializer = new TypedSmileRedisSerializer(smileMapper,
+        smileMapper.getTypeFactory().constructCollectionType(List.class, CourseWithLessons.class), false);
+
+    assertThat(serializer.deserialize(serializer.serialize(courses))).isEqualTo(courses);
+  }
+
+  @Test
+  void shouldRoundTripStampedValue() {
+    var serializer = new TypedSmileRedisSerializer(smileMapper,
+        smileMapper.getTypeFactory().constructCollectionType(List.class, CourseWithLessons.class), true);
+
+    var stamped = new StampedValue(courses, 42L);
+
+    assertThat(serializer.deserialize(serializer.serialize(stamped))).isEqualTo(stamped);
+  }
+}
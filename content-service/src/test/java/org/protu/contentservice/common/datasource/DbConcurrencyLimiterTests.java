@@ -0,0 +1,75 @@
+package org.protu.contentservice.common.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DbConcurrencyLimiterTests {
+
+  private final DataSource target = mock(DataSource.class);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private DbConcurrencyLimiter limiter;
+  private DataSource dataSource;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    when(target.getConnection()).thenAnswer(_ -> mock(Connection.class));
+    limiter = new DbConcurrencyLimiter(2, Duration.ofMillis(50));
+    limiter.bindTo(registry);
+    dataSource = limiter.limit(target);
+  }
+
+  @Test
+  void getConnection_shouldHoldAPermitUntilClosed_andReleaseItOnce() throws SQLException {
+    Connection first = dataSource.getConnection();
+    Connection second = dataSource.getConnection();
+    assertThat(limiter.availablePermits()).isZero();
+
+    first.close();
+    first.close();
+    assertThat(limiter.availablePermits()).isEqualTo(1);
+
+    second.close();
+    assertThat(limiter.availablePermits()).isEqualTo(2);
+  }
+
+  @Test
+  void getConnection_shouldTimeOut_whenNoPermitFreesUp() throws SQLException {
+    dataSource.getConnection();
+    dataSource.getConnection();
+
+    assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+    assertThat(registry.get("db.limiter.wait").tag("outcome", "timeout").timer().count()).isEqualTo(1);
+    assertThat(registry.get("db.limiter.wait").tag("outcome", "acquired").timer().count()).isEqualTo(2);
+  }
+
+  @Test
+  void getConnection_shouldReturnThePermit_whenThePoolFails() throws SQLException {
+    when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+    assertThatThrownBy(dataSource::getConnection).hasMessage("pool exhausted");
+    assertThat(limiter.availablePermits()).isEqualTo(2);
+  }
+
+  @Test
+  void close_shouldReachTheUnderlyingConnection() throws SQLException {
+    Connection underlying = mock(Connection.class);
+    when(target.getConnection()).thenReturn(underlying);
+
+    dataSource.getConnection().close();
+
+    verify(underlying).close();
+  }
+}
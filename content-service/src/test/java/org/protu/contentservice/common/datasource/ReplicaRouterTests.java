@@ -0,0 +1,186 @@
+package org.protu.contentservice.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routing against two independent Postgres containers standing in for a primary and a replica. Each
+ * holds a different marker row, so a query shows which one served it.
+ */
+@Testcontainers
+public class ReplicaRouterTests {
+
+  @Container
+  private static final PostgreSQLContainer<?> primaryContainer =
+      new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+  @Container
+  private static final PostgreSQLContainer<?> replicaContainer =
+      new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+  private static HikariDataSource primary;
+  private static HikariDataSource replica;
+
+  @BeforeAll
+  static void setUp() {
+    primary = pool(primaryContainer.getJdbcUrl(), primaryContainer);
+    replica = pool(replicaContainer.getJdbcUrl(), replicaContainer);
+    mark(primary, "primary");
+    mark(replica, "replica");
+  }
+
+  @AfterAll
+  static void tearDown() {
+    primary.close();
+    replica.close();
+  }
+
+  @AfterEach
+  void clearUser() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private static HikariDataSource pool(String url, PostgreSQLContainer<?> container) {
+    HikariDataSource pool = new HikariDataSource();
+    pool.setJdbcUrl(url);
+    pool.setUsername(container.getUsername());
+    pool.setPassword(container.getPassword());
+    pool.setConnectionTimeout(1000);
+    pool.setInitializationFailTimeout(-1);
+    return pool;
+  }
+
+  private static void mark(DataSource dataSource, String node) {
+    JdbcClient jdbcClient = JdbcClient.create(dataSource);
+    jdbcClient.sql("CREATE TABLE node (name TEXT)").update();
+    jdbcClient.sql("INSERT INTO node VALUES (:name)").param("name", node).update();
+  }
+
+  private record Routing(
+      ReplicaRouter router, RecentWriters recentWriters, TransactionTemplate transactions, JdbcClient jdbcClient) {
+
+    String read(boolean readOnly) {
+      transactions.setReadOnly(readOnly);
+      return transactions.execute(_ -> jdbcClient.sql("SELECT name FROM node").query(String.class).single());
+    }
+  }
+
+  private static Routing routing(List<ReplicaRouter.Replica> replicas) {
+    RecentWriters recentWriters = new RecentWriters(Duration.ofMinutes(1));
+    ReplicaRouter router = new ReplicaRouter(replicas, recentWriters, Duration.ofSeconds(10), Duration.ofHours(1));
+    DataSource dataSource = router.route(primary);
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    transactionManager.addListener(recentWriters);
+    return new Routing(router, recentWriters, new TransactionTemplate(transactionManager), JdbcClient.create(dataSource));
+  }
+
+  private static void signIn(long userId) {
+    Jwt jwt = Jwt.withTokenValue("token").header("alg", "HS256").claim("id", userId).build();
+    SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+  }
+
+  @Test
+  void readOnlyTransactions_shouldReadFromTheReplica_andOthersFromThePrimary() {
+    Routing routing = routing(List.of(new ReplicaRouter.Replica("replica-0", replica)));
+
+    assertThat(routing.read(true)).isEqualTo("replica");
+    assertThat(routing.read(false)).isEqualTo("primary");
+    assertThat(routing.jdbcClient().sql("SELECT name FROM node").query(String.class).single()).isEqualTo("primary");
+  }
+
+  @Test
+  void userWhoJustWrote_shouldReadFromThePrimary_whileOthersKeepUsingTheReplica() {
+    Routing routing = routing(List.of(new ReplicaRouter.Replica("replica-0", replica)));
+
+    signIn(7);
+    routing.read(false);
+    assertThat(routing.read(true)).isEqualTo("primary");
+
+    signIn(8);
+    assertThat(routing.read(true)).isEqualTo("replica");
+  }
+
+  @Test
+  void userMarkedAsWriter_shouldReadFromThePrimary_withoutAWriteTransaction() {
+    Routing routing = routing(List.of(new ReplicaRouter.Replica("replica-0", replica)));
+
+    routing.recentWriters().markWrote(7);
+
+    signIn(7);
+    assertThat(routing.read(true)).isEqualTo("primary");
+    signIn(8);
+    assertThat(routing.read(true)).isEqualTo("replica");
+  }
+
+  @Test
+  void catalogChange_shouldSendEveryReadToThePrimary() {
+    Routing routing = routing(List.of(new ReplicaRouter.Replica("replica-0", replica)));
+    assertThat(routing.read(true)).isEqualTo("replica");
+
+    routing.recentWriters().catalogChanged();
+
+    assertThat(routing.read(true)).isEqualTo("primary");
+    signIn(8);
+    assertThat(routing.read(true)).isEqualTo("primary");
+  }
+
+  @Test
+  void unreachableReplica_shouldBeMarkedDown_andReadsFailOverToThePrimary() {
+    HikariDataSource unreachable = pool("jdbc:postgresql://localhost:1/none", replicaContainer);
+    try {
+      Routing routing = routing(List.of(new ReplicaRouter.Replica("replica-0", unreachable)));
+
+      assertThat(routing.read(true)).isEqualTo("primary");
+      assertThat(routing.router().isHealthy("replica-0")).isFalse();
+    } finally {
+      unreachable.close();
+    }
+  }
+
+  @Test
+  void healthCheck_shouldBringARecoveredReplicaBackIntoRotation() {
+    AtomicBoolean down = new AtomicBoolean(true);
+    DataSource flaky = new DelegatingDataSource(replica) {
+      @Override
+      public Connection getConnection() throws SQLException {
+        if (down.get()) {
+          throw new SQLException("replica down");
+        }
+        return super.getConnection();
+      }
+    };
+    Routing routing = routing(List.of(new ReplicaRouter.Replica("replica-0", flaky)));
+
+    assertThat(routing.read(true)).isEqualTo("primary");
+    down.set(false);
+    assertThat(routing.read(true)).isEqualTo("primary");
+
+    routing.router().checkHealth();
+
+    assertThat(routing.router().isHealthy("replica-0")).isTrue();
+    assertThat(routing.read(true)).isEqualTo("replica");
+  }
+}
@@ -0,0 +1,82 @@
+package org.protu.contentservice.common.etag;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class EntityVersionsTests {
+
+  private static final String CHANNEL = "entity-versions";
+
+  private StringRedisTemplate redis;
+  private ValueOperations<String, String> values;
+  private EntityVersions versions;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    redis = mock(StringRedisTemplate.class);
+    values = mock(ValueOperations.class);
+    when(redis.opsForValue()).thenReturn(values);
+    when(values.get("entity-version::generation")).thenReturn("gen");
+
+    AppProperties props = mock(AppProperties.class, RETURNS_DEEP_STUBS);
+    when(props.cache().versionChannel()).thenReturn(CHANNEL);
+    when(props.cache().versions()).thenReturn(
+        new AppProperties.Cache.Versions(100, Duration.ofMinutes(1), Duration.ofMinutes(10)));
+    versions = new EntityVersions(redis, props);
+  }
+
+  private static DefaultMessage message(String body) {
+    return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void etag_shouldReadRedisOnlyOnce_perScope() {
+    when(values.get("entity-version::course:java")).thenReturn("3");
+
+    assertThat(versions.etag(EntityVersions.course("java"))).isEqualTo("\"gen-3\"");
+    assertThat(versions.etag(EntityVersions.course("java"))).isEqualTo("\"gen-3\"");
+
+    verify(values, times(1)).get("entity-version::course:java");
+  }
+
+  @Test
+  void bump_shouldChangeEtagAndPublishNewVersion() {
+    when(values.increment("entity-version::courses")).thenReturn(1L);
+    String before = versions.etag(EntityVersions.COURSES);
+
+    versions.bump(EntityVersions.COURSES);
+
+    assertThat(versions.etag(EntityVersions.COURSES)).isNotEqualTo(before).isEqualTo("\"gen-1\"");
+    verify(redis).convertAndSend(CHANNEL, "courses=1");
+  }
+
+  @Test
+  void onMessage_shouldNeverMoveVersionBackwards() {
+    versions.onMessage(message("track:a=b=5"), null);
+    versions.onMessage(message("track:a=b=4"), null);
+
+    assertThat(versions.etag(EntityVersions.track("a=b"))).isEqualTo("\"gen-5\"");
+    verify(values, never()).get("entity-version::track:a=b");
+  }
+
+  @Test
+  void onChannelSubscribed_shouldReloadVersionsFromRedis() {
+    when(values.get("entity-version::courses")).thenReturn("3", "7");
+    assertThat(versions.etag(EntityVersions.COURSES)).isEqualTo("\"gen-3\"");
+
+    versions.onChannelSubscribed(CHANNEL.getBytes(StandardCharsets.UTF_8), 1);
+
+    assertThat(versions.etag(EntityVersions.COURSES)).isEqualTo("\"gen-7\"");
+  }
+}
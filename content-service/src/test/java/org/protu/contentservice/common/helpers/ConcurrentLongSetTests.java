@@ -0,0 +1,49 @@
+package org.protu.contentservice.common.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentLongSetTests {
+
+  @Test
+  void shouldBehaveLikeAHashSet_underRandomAddsAndRemoves() {
+    Random random = new Random(42);
+    ConcurrentLongSet set = new ConcurrentLongSet();
+    Set<Long> reference = new HashSet<>();
+
+    for (int i = 0; i < 200_000; i++) {
+      long value = 1 + random.nextInt(2_000);
+      switch (random.nextInt(3)) {
+        case 0 -> assertThat(set.add(value)).isEqualTo(reference.add(value));
+        case 1 -> assertThat(set.remove(value)).isEqualTo(reference.remove(value));
+        default -> assertThat(set.contains(value)).isEqualTo(reference.contains(value));
+      }
+    }
+    assertThat(set.size()).isEqualTo(reference.size());
+  }
+
+  @Test
+  void addAll_shouldGrowTheTable() {
+    ConcurrentLongSet set = new ConcurrentLongSet();
+
+    set.addAll(LongStream.rangeClosed(1, 10_000).toArray());
+
+    assertThat(set.size()).isEqualTo(10_000);
+    assertThat(LongStream.rangeClosed(1, 10_000).allMatch(set::contains)).isTrue();
+    assertThat(set.contains(10_001)).isFalse();
+  }
+
+  @Test
+  void contains_shouldRejectNonPositiveValues() {
+    ConcurrentLongSet set = new ConcurrentLongSet();
+
+    assertThat(set.contains(0)).isFalse();
+    assertThat(set.remove(-1)).isFalse();
+  }
+}
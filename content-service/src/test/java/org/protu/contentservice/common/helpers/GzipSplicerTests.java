@@ -0,0 +1,63 @@
+package org.protu.contentservice.common.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GzipSplicerTests {
+
+  private static String gunzip(byte[] gzip) throws IOException {
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static long crc(String value) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(value.getBytes(StandardCharsets.UTF_8));
+    return crc32.getValue();
+  }
+
+  @Test
+  void compress_shouldProduceStandaloneGzip() throws IOException {
+    String content = "\"# Lesson 1\\nSome content\"".repeat(100);
+
+    assertThat(gunzip(GzipSplicer.compress(content.getBytes(StandardCharsets.UTF_8)))).isEqualTo(content);
+  }
+
+  @Test
+  void splice_shouldWrapPrecompressedValueInOneGzipMember() throws IOException {
+    String prefix = "{\"message\":\"ok\",\"data\":{\"content\":";
+    String content = "\"" + "lesson body ".repeat(5_000) + "\"";
+    String suffix = "},\"meta\":{\"status\":\"SUCCESS\"}}";
+
+    byte[] compressed = GzipSplicer.compress(content.getBytes(StandardCharsets.UTF_8));
+    byte[] spliced = GzipSplicer.splice(
+        prefix.getBytes(StandardCharsets.UTF_8), compressed, suffix.getBytes(StandardCharsets.UTF_8));
+
+    assertThat(gunzip(spliced)).isEqualTo(prefix + content + suffix);
+  }
+
+  @Test
+  void combineCrc_shouldMatchCrcOfConcatenation() {
+    String first = "first part";
+    String second = "second part, a little longer";
+
+    assertThat(GzipSplicer.combineCrc(crc(first), crc(second), second.length()))
+        .isEqualTo(crc(first + second));
+  }
+
+  @Test
+  void acceptsGzip_shouldHonourQualityValues() {
+    assertThat(GzipSplicer.acceptsGzip("gzip, deflate, br")).isTrue();
+    assertThat(GzipSplicer.acceptsGzip("br;q=1.0, gzip;q=0")).isFalse();
+    assertThat(GzipSplicer.acceptsGzip("identity")).isFalse();
+    assertThat(GzipSplicer.acceptsGzip(null)).isFalse();
+  }
+}
@@ -0,0 +1,89 @@
+package org.protu.contentservice.common.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.config.PostgresContainerConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@ActiveProfiles("test")
+@JdbcTest
+@Import({EntityIdIndex.class, PostgresContainerConfig.class})
+public class EntityIdIndexTests {
+
+  @MockitoBean
+  EntityVersions versions;
+
+  @Autowired
+  EntityIdIndex ids;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  @BeforeEach
+  void setUp() {
+    jdbcClient.sql("DELETE FROM courses;").update();
+    ids.evict(EntityVersions.course("course1"));
+    ids.evict(EntityVersions.course("renamed"));
+  }
+
+  private int insertCourse(String name) {
+    return jdbcClient.sql("INSERT INTO courses (name, description) VALUES (:name, 'desc') RETURNING id")
+        .param("name", name)
+        .query(Integer.class)
+        .single();
+  }
+
+  @Test
+  void courseId_shouldServeFromIndex_afterFirstLookup() {
+    int id = insertCourse("course1");
+
+    assertThat(ids.courseId("course1")).isEqualTo(id);
+    jdbcClient.sql("DELETE FROM courses;").update();
+
+    assertThat(ids.courseId("course1")).isEqualTo(id);
+  }
+
+  @Test
+  void evict_shouldResolveRenamedCourseFromDatabase() {
+    int id = insertCourse("course1");
+    ids.courseId("course1");
+
+    jdbcClient.sql("UPDATE courses SET name = 'renamed' WHERE id = :id").param("id", id).update();
+    ids.evict(EntityVersions.course("course1"));
+
+    assertThat(ids.courseId("renamed")).isEqualTo(id);
+    assertThatExceptionOfType(EntityNotFoundException.class)
+        .isThrownBy(() -> ids.courseId("course1"));
+  }
+
+  @Test
+  void courseIdChanged_shouldReplaceIdLeftByLostEviction() {
+    int staleId = insertCourse("course1");
+    ids.courseId("course1");
+    jdbcClient.sql("DELETE FROM courses;").update();
+    int id = insertCourse("course1");
+
+    assertThat(ids.courseIdChanged("course1", staleId)).isTrue();
+    assertThat(ids.courseId("course1")).isEqualTo(id);
+  }
+
+  @Test
+  void courseIdChanged_shouldThrow_whenCourseIsGone() {
+    int staleId = insertCourse("course1");
+    ids.courseId("course1");
+    jdbcClient.sql("DELETE FROM courses;").update();
+
+    assertThatExceptionOfType(EntityNotFoundException.class)
+        .isThrownBy(() -> ids.courseIdChanged("course1", staleId));
+  }
+}
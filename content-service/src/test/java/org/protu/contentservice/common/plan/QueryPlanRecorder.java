@@ -0,0 +1,153 @@
+package org.protu.contentservice.common.plan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps a {@link DataSource} so every query and data-modifying statement it runs is first planned
+ * with {@code EXPLAIN (FORMAT JSON)} on the same connection and with the same parameters. The plan
+ * is never executed; only the relations it reads with a sequential scan are recorded.
+ */
+public final class QueryPlanRecorder {
+
+  public record RecordedPlan(String sql, Set<String> seqScans, String error) {
+  }
+
+  private record Parameter(Method setter, Object[] args) {
+  }
+
+  private static final Pattern EXPLAINABLE =
+      Pattern.compile("^\\s*(SELECT|WITH|INSERT|UPDATE|DELETE)\\b", Pattern.CASE_INSENSITIVE);
+  private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final List<RecordedPlan> plans = new CopyOnWriteArrayList<>();
+
+  public List<RecordedPlan> plans() {
+    return List.copyOf(plans);
+  }
+
+  public void clear() {
+    plans.clear();
+  }
+
+  public DataSource wrap(DataSource dataSource) {
+    return proxy(DataSource.class, (proxy, method, args) -> {
+      Object result = invoke(dataSource, method, args);
+      return result instanceof Connection connection ? wrap(connection) : result;
+    });
+  }
+
+  private Connection wrap(Connection connection) {
+    return proxy(Connection.class, (proxy, method, args) -> {
+      Object result = invoke(connection, method, args);
+      if (method.getName().equals("prepareStatement")) {
+        return wrap(connection, (PreparedStatement) result, (String) args[0]);
+      }
+      if (method.getName().equals("createStatement")) {
+        return wrap(connection, (Statement) result);
+      }
+      return result;
+    });
+  }
+
+  private Statement wrap(Connection connection, Statement statement) {
+    return proxy(Statement.class, (proxy, method, args) -> {
+      if (method.getName().startsWith("execute") && args != null && args[0] instanceof String sql) {
+        explain(connection, sql, List.of());
+      }
+      return invoke(statement, method, args);
+    });
+  }
+
+  private PreparedStatement wrap(Connection connection, PreparedStatement statement, String sql) {
+    List<Parameter> parameters = new ArrayList<>();
+    boolean[] batchExplained = {false};
+    return proxy(PreparedStatement.class, (proxy, method, args) -> {
+      String name = method.getName();
+      if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+        parameters.add(new Parameter(method, args));
+      } else if (name.equals("clearParameters")) {
+        parameters.clear();
+      } else if (EXECUTE_METHODS.contains(name) && args == null) {
+        explain(connection, sql, parameters);
+      } else if (name.equals("addBatch") && args == null && !batchExplained[0]) {
+        // the statement is the same for every row of a batch, the first row stands for all of them
+        batchExplained[0] = true;
+        explain(connection, sql, parameters);
+      }
+      return invoke(statement, method, args);
+    });
+  }
+
+  private void explain(Connection connection, String sql, List<Parameter> parameters) throws Exception {
+    if (!EXPLAINABLE.matcher(sql).find()) {
+      return;
+    }
+
+    // a failed EXPLAIN must not abort the surrounding test transaction
+    Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+    try (PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+      for (Parameter parameter : parameters) {
+        parameter.setter().invoke(explain, parameter.args());
+      }
+      try (ResultSet rs = explain.executeQuery()) {
+        rs.next();
+        plans.add(new RecordedPlan(sql, seqScans(objectMapper.readTree(rs.getString(1))), null));
+      }
+      if (savepoint != null) {
+        connection.releaseSavepoint(savepoint);
+      }
+    } catch (Exception e) {
+      if (savepoint != null) {
+        connection.rollback(savepoint);
+      }
+      plans.add(new RecordedPlan(sql, Set.of(), e.toString()));
+    }
+  }
+
+  private static Set<String> seqScans(JsonNode plan) {
+    Set<String> relations = new TreeSet<>();
+    collectSeqScans(plan, relations);
+    return relations;
+  }
+
+  private static void collectSeqScans(JsonNode node, Set<String> relations) {
+    if (node.isObject() && "Seq Scan".equals(node.path("Node Type").asText())) {
+      relations.add(node.path("Relation Name").asText());
+    }
+    if (node.isContainerNode()) {
+      node.forEach(child -> collectSeqScans(child, relations));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(QueryPlanRecorder.class.getClassLoader(), new Class<?>[]{type}, handler);
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package org.protu.contentservice.common.plan;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.index.EntityIdIndex;
+import org.protu.contentservice.common.pagination.PageQuery;
+import org.protu.contentservice.config.PostgresContainerConfig;
+import org.protu.contentservice.course.CourseRepository;
+import org.protu.contentservice.course.CourseRequest;
+import org.protu.contentservice.lesson.LessonRepository;
+import org.protu.contentservice.lesson.dto.LessonRequest;
+import org.protu.contentservice.lesson.dto.LessonUpdateRequest;
+import org.protu.contentservice.progress.PendingCompletion;
+import org.protu.contentservice.progress.ProgressRepository;
+import org.protu.contentservice.track.TrackRepository;
+import org.protu.contentservice.track.TrackRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Plans every targeted query of the repositories against a synthetic dataset large enough for the
+ * planner to prefer indexes wherever one applies, and fails on any sequential scan. Full listings
+ * read every row by design and are left out.
+ */
+@ActiveProfiles("test")
+@JdbcTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import({
+    CourseRepository.class,
+    TrackRepository.class,
+    LessonRepository.class,
+    ProgressRepository.class,
+    EntityIdIndex.class,
+    PostgresContainerConfig.class,
+    QueryPlanRegressionTests.PlanRecording.class})
+public class QueryPlanRegressionTests {
+
+  private static final QueryPlanRecorder PLANS = new QueryPlanRecorder();
+  private static final long FIRST_USER_ID = 1_000_000L;
+  private static final int TRACKS = 2_000;
+  private static final int COURSES = 10_000;
+  private static final int LESSONS_PER_COURSE = 10;
+  private static final int USERS = 20_000;
+
+  @TestConfiguration(proxyBeanMethods = false)
+  static class PlanRecording {
+
+    @Bean
+    static BeanPostProcessor planRecordingDataSource() {
+      return new BeanPostProcessor() {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+          return bean instanceof DataSource dataSource ? PLANS.wrap(dataSource) : bean;
+        }
+      };
+    }
+  }
+
+  @MockitoBean
+  EntityVersions versions;
+
+  @Autowired
+  CourseRepository courses;
+
+  @Autowired
+  TrackRepository tracks;
+
+  @Autowired
+  LessonRepository lessons;
+
+  @Autowired
+  ProgressRepository progress;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  private long userId;
+  private int courseId;
+  private int lessonId;
+  private int otherLessonId;
+
+  @BeforeAll
+  void seed() {
+    jdbcClient.sql("""
+            INSERT INTO tracks (name, description)
+            SELECT 'plan-track-' || g, 'desc' FROM generate_series(1, :tracks) AS g
+            """)
+        .param("tracks", TRACKS)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO courses (name, description, lesson_count)
+            SELECT 'plan-course-' || g, 'desc', :perCourse FROM generate_series(1, :courses) AS g
+            """)
+        .param("courses", COURSES)
+        .param("perCourse", LESSONS_PER_COURSE)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO lessons (name, content, lesson_order)
+            SELECT 'plan-lesson-' || g, 'content', (g - 1) % :perCourse + 1
+            FROM generate_series(1, :lessons) AS g
+            """)
+        .param("perCourse", LESSONS_PER_COURSE)
+        .param("lessons", COURSES * LESSONS_PER_COURSE)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO courses_lessons (course_id, lesson_id)
+            SELECT c.id, l.id
+            FROM generate_series(1, :lessons) AS g
+            JOIN courses AS c ON c.name = 'plan-course-' || ((g - 1) / :perCourse + 1)
+            JOIN lessons AS l ON l.name = 'plan-lesson-' || g
+            """)
+        .param("perCourse", LESSONS_PER_COURSE)
+        .param("lessons", COURSES * LESSONS_PER_COURSE)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO tracks_courses (track_id, course_id)
+            SELECT t.id, c.id
+            FROM generate_series(1, :courses) AS g
+            JOIN tracks AS t ON t.name = 'plan-track-' || ((g - 1) % :tracks + 1)
+            JOIN courses AS c ON c.name = 'plan-course-' || g
+            """)
+        .param("courses", COURSES)
+        .param("tracks", TRACKS)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO users (id, public_id, roles)
+            SELECT :firstUser + g, lpad(g::TEXT, 26, '0'), 'ROLE_USER' FROM generate_series(1, :users) AS g
+            """)
+        .param("firstUser", FIRST_USER_ID)
+        .param("users", USERS)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO users_courses (user_id, course_id, completed_lessons)
+            SELECT :firstUser + g, c.id, 2
+            FROM generate_series(1, :users) AS g
+            CROSS JOIN generate_series(0, 2) AS j
+            JOIN courses AS c ON c.name = 'plan-course-' || ((g * 7 + j * 13) % :courses + 1)
+            """)
+        .param("firstUser", FIRST_USER_ID)
+        .param("users", USERS)
+        .param("courses", COURSES)
+        .update();
+    jdbcClient.sql("""
+            INSERT INTO users_lessons (user_id, lesson_id, is_completed)
+            SELECT uc.user_id, cl.lesson_id, l.lesson_order <= 2
+            FROM users_courses AS uc
+            JOIN courses_lessons AS cl ON cl.course_id = uc.course_id
+            JOIN lessons AS l ON l.id = cl.lesson_id
+            WHERE uc.user_id > :firstUser AND l.lesson_order <= 4
+            """)
+        .param("firstUser", FIRST_USER_ID)
+        .update();
+    jdbcClient.sql("ANALYZE").update();
+  }
+
+  @AfterAll
+  void cleanUp() {
+    jdbcClient.sql("DELETE FROM users WHERE id > :firstUser").param("firstUser", FIRST_USER_ID).update();
+    jdbcClient.sql("DELETE FROM tracks WHERE name LIKE 'plan-%'").update();
+    jdbcClient.sql("DELETE FROM courses WHERE name LIKE 'plan-%'").update();
+    jdbcClient.sql("DELETE FROM lessons WHERE name LIKE 'plan-%'").update();
+  }
+
+  @BeforeEach
+  void setUp() {
+    userId = FIRST_USER_ID + 42;
+    courseId = courses.findByNameOrThrow("plan-course-%d".formatted((42 * 7) % COURSES + 1)).id();
+    List<Integer> courseLessons = jdbcClient.sql("""
+            SELECT lesson_id FROM courses_lessons WHERE course_id = :courseId ORDER BY lesson_id
+            """)
+        .param("courseId", courseId)
+        .query(Integer.class)
+        .list();
+    lessonId = courseLessons.getFirst();
+    otherLessonId = courseLessons.getLast();
+    PLANS.clear();
+  }
+
+  private static void assertNoSeqScans() {
+    assertThat(PLANS.plans()).isNotEmpty();
+    assertThat(PLANS.plans()).allSatisfy(plan -> {
+      assertThat(plan.error()).as(plan.sql()).isNull();
+      assertThat(plan.seqScans()).as(plan.sql()).isEmpty();
+    });
+  }
+
+  @Test
+  void courseQueries_shouldUseIndexes() {
+    courses.add(new CourseRequest("plan-new-course", "desc"));
+    courses.findByName("plan-course-1");
+    courses.findByNameOrThrow("plan-course-2");
+    courses.update("plan-course-3", new CourseRequest("plan-course-3", "updated"));
+    courses.updateCoursePicture("plan-course-4", "https://example.com/pic.png");
+    courses.findLessonsByCourseId(courseId);
+    courses.findLessonsWithCompletionStatus(userId, courseId);
+    courses.deleteLessonFromCourse(courseId, lessonId);
+    courses.addLessonToCourse(courseId, lessonId);
+    courses.delete("plan-course-5");
+
+    assertNoSeqScans();
+  }
+
+  @Test
+  void coursePages_shouldUseIndexes() {
+    courses.findPage(PageQuery.of("name", null, null, 20));
+    courses.findPage(PageQuery.of("name", "plan-course-12", null, 20));
+    var page = courses.findPage(PageQuery.of("id", null, null, 20));
+    courses.findPage(PageQuery.of("id", null, page.nextCursor(), 20));
+
+    assertNoSeqScans();
+  }
+
+  @Test
+  void trackQueries_shouldUseIndexes() {
+    tracks.add(new TrackRequest("plan-new-track", "desc"));
+    tracks.findByName("plan-track-1");
+    tracks.update("plan-track-2", new TrackRequest("plan-track-2", "updated"));
+    tracks.findCoursesByTrackName("plan-track-3");
+    tracks.addCourseToTrack("plan-track-3", "plan-course-1");
+    tracks.deleteCourseFromTrack("plan-track-3", "plan-course-1");
+    tracks.findPage(PageQuery.of("name", "plan-track-1", null, 20));
+    var page = tracks.findPage(PageQuery.of("id", null, null, 20));
+    tracks.findPage(PageQuery.of("id", null, page.nextCursor(), 20));
+    tracks.delete("plan-track-4");
+
+    assertNoSeqScans();
+  }
+
+  @Test
+  void lessonQueries_shouldUseIndexes() {
+    lessons.add(new LessonRequest("plan-new-lesson", "content", 1));
+    lessons.findByName("plan-lesson-1");
+    lessons.findCompressedByName("plan-lesson-2");
+    lessons.findByNameWithoutContent("plan-lesson-3");
+    lessons.update("plan-lesson-4", new LessonUpdateRequest("plan-lesson-4", 4, "updated"));
+    lessons.delete("plan-lesson-5");
+
+    assertNoSeqScans();
+  }
+
+  @Test
+  void progressQueries_shouldUseIndexes() {
+    progress.getNumberOfLessonsInCourse(courseId);
+    progress.getTotalNumberOfCompletedLessonsInCourse(userId, courseId);
+    progress.completeLesson(userId, courseId, otherLessonId);
+    progress.uncompleteLesson(userId, courseId, lessonId);
+    progress.findCompletedLessonIds(userId, List.of(lessonId, otherLessonId));
+    progress.applyCompletions(List.of(
+        new PendingCompletion(userId, courseId, "course", lessonId, true),
+        new PendingCompletion(userId, courseId, "course", otherLessonId, false)));
+    progress.bulkApplyCompletions(userId, List.of(
+        new PendingCompletion(userId, courseId, "course", lessonId, false),
+        new PendingCompletion(userId, courseId, "course", otherLessonId, true)));
+    progress.findDashboard(userId);
+    progress.removeCourseForUser(userId, courseId);
+    progress.addCourseForUser(userId, courseId);
+
+    assertNoSeqScans();
+  }
+}
@@ -0,0 +1,105 @@
+package org.protu.contentservice.common.response;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.protu.contentservice.common.response.ApiResponseBuilder.buildSuccessApiResponse;
+
+public class CachedResponseBodiesTests {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/courses");
+  private final AtomicInteger loads = new AtomicInteger();
+  private final Supplier<List<String>> data = () -> {
+    loads.incrementAndGet();
+    return List.of("java", "go");
+  };
+  private CachedResponseBodies responseBodies;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    AppProperties props = mock(AppProperties.class);
+    when(props.responseCache()).thenReturn(new AppProperties.ResponseCache(true, true));
+    responseBodies = new CachedResponseBodies(objectMapper, new PrecompressedJsonResponses(objectMapper), props);
+  }
+
+  private MockHttpServletResponse write(String version, boolean gzip) throws Exception {
+    var response = new MockHttpServletResponse();
+    var envelope = buildSuccessApiResponse("ok", PrecompressedJsonResponses.PLACEHOLDER, HttpStatus.OK, "v1", request);
+    responseBodies.write("courses", version, data, envelope, gzip, response);
+    return response;
+  }
+
+  @Test
+  void write_shouldReuseBody_untilVersionChanges() throws Exception {
+    write("v1", false);
+    write("v1", true);
+    write("v2", false);
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void write_shouldEmitFullEnvelope_plainAndGzipped() throws Exception {
+    JsonNode plain = objectMapper.readTree(write("v1", false).getContentAsByteArray());
+
+    var gzipped = write("v1", true);
+    byte[] unzipped = new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray())).readAllBytes();
+
+    assertThat(plain.get("data")).isEqualTo(objectMapper.valueToTree(List.of("java", "go")));
+    assertThat(plain.get("meta").get("request").get("uri").asText()).isEqualTo("/api/v1/courses");
+    assertThat(gzipped.getHeader("Content-Encoding")).isEqualTo("gzip");
+    assertThat(objectMapper.readTree(unzipped).get("data")).isEqualTo(plain.get("data"));
+  }
+
+  @Test
+  void write_shouldNotBlockOtherListings_whileBuilding() throws Exception {
+    var buildStarted = new CountDownLatch(1);
+    var releaseBuild = new CountDownLatch(1);
+    Supplier<List<String>> slowData = () -> {
+      buildStarted.countDown();
+      try {
+        releaseBuild.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return List.of("java");
+    };
+    var envelope = buildSuccessApiResponse("ok", PrecompressedJsonResponses.PLACEHOLDER, HttpStatus.OK, "v1", request);
+
+    var slow = CompletableFuture.runAsync(() -> {
+      try {
+        responseBodies.write("tracks", "v1", slowData, envelope, false, new MockHttpServletResponse());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    assertThat(buildStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+    write("v1", false);
+    write("v1", false);
+    releaseBuild.countDown();
+
+    slow.get(5, TimeUnit.SECONDS);
+    assertThat(loads).hasValue(1);
+  }
+}
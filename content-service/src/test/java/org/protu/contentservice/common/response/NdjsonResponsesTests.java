@@ -0,0 +1,25 @@
+package org.protu.contentservice.common.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NdjsonResponsesTests {
+
+  @Test
+  void stream_shouldWriteOneValuePerLine_withoutSeparatorSpaces() throws Exception {
+    NdjsonResponses responses = new NdjsonResponses(new ObjectMapper());
+    List<Map<String, Integer>> items = List.of(Map.of("id", 1), Map.of("id", 2), Map.of("id", 3));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    responses.<Map<String, Integer>>stream(sink -> items.forEach(sink)).getBody().writeTo(out);
+
+    assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}\n{\"id\":2}\n{\"id\":3}\n");
+  }
+}
@@ -0,0 +1,200 @@
+package org.protu.contentservice.course;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.protu.contentservice.common.exception.custom.EntityNotFoundException;
+import org.protu.contentservice.common.exception.custom.UploadQueueFullException;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CoursePicUploadsTests {
+
+  private final CourseService courseService = mock(CourseService.class);
+  private final Map<String, String> jobs = new ConcurrentHashMap<>();
+  private CoursePicUploads uploads;
+
+  @TempDir
+  Path storageDir;
+
+  @AfterEach
+  void tearDown() {
+    if (uploads != null) {
+      uploads.destroy();
+    }
+  }
+
+  // job states live in a map standing in for Redis
+  @SuppressWarnings("unchecked")
+  private StringRedisTemplate redis() {
+    StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    ValueOperations<String, String> values = mock(ValueOperations.class);
+    when(redis.opsForValue()).thenReturn(values);
+    doAnswer(invocation -> jobs.put(invocation.getArgument(0), invocation.getArgument(1)))
+        .when(values).set(anyString(), anyString(), any(Duration.class));
+    when(values.get(anyString())).thenAnswer(invocation -> jobs.get(invocation.<String>getArgument(0)));
+    when(redis.delete(anyString())).thenAnswer(invocation -> jobs.remove(invocation.<String>getArgument(0)) != null);
+    return redis;
+  }
+
+  private static AppProperties props(int queueCapacity) {
+    AppProperties props = mock(AppProperties.class);
+    when(props.picUploads()).thenReturn(new AppProperties.PicUploads(1, queueCapacity, Duration.ofHours(1)));
+    return props;
+  }
+
+  private CoursePicUploads uploads(CoursePicStorage storage, int queueCapacity) {
+    when(courseService.saveCoursePic(any(), any())).thenReturn(true);
+    uploads = new CoursePicUploads(courseService, storage, redis(), new ObjectMapper(), props(queueCapacity));
+    return uploads;
+  }
+
+  // stands in for Cloudinary: keeps pictures under a temp directory, addressed by their file URI
+  private class LocalFiles implements CoursePicStorage {
+
+    @Override
+    public StoredPic store(String courseName, String filename, byte[] content) throws IOException {
+      Path target = storageDir.resolve(courseName + "-" + filename);
+      Files.write(target, content);
+      return new StoredPic(target.toUri().toString(), target.toString());
+    }
+
+    @Override
+    public void delete(String assetId) throws IOException {
+      Files.delete(Path.of(assetId));
+    }
+  }
+
+  private CoursePicStorage localFiles() {
+    return new LocalFiles();
+  }
+
+  private static MockMultipartFile picture() {
+    return new MockMultipartFile("file", "pic.png", "image/png", new byte[]{1, 2, 3});
+  }
+
+  private static CoursePicUpload awaitDone(CoursePicUploads uploads, String courseName, UUID jobId) throws InterruptedException {
+    for (int i = 0; i < 200; i++) {
+      CoursePicUpload job = uploads.find(courseName, jobId);
+      if (job.status() == CoursePicUpload.Status.SUCCEEDED || job.status() == CoursePicUpload.Status.FAILED) {
+        return job;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("upload " + jobId + " did not finish");
+  }
+
+  @Test
+  void submit_shouldStoreThePicture_andSaveItsUrlOnTheCourse() throws Exception {
+    CoursePicUploads uploads = uploads(localFiles(), 10);
+
+    CoursePicUpload queued = uploads.submit("course1", picture());
+    CoursePicUpload done = awaitDone(uploads, "course1", queued.id());
+
+    Path stored = storageDir.resolve("course1-pic.png");
+    assertThat(done.status()).isEqualTo(CoursePicUpload.Status.SUCCEEDED);
+    assertThat(done.picUrl()).isEqualTo(stored.toUri().toString());
+    assertThat(Files.readAllBytes(stored)).containsExactly(1, 2, 3);
+    verify(courseService).saveCoursePic("course1", stored.toUri().toString());
+  }
+
+  @Test
+  void submit_shouldMarkTheJobFailed_whenStorageFails() throws Exception {
+    CoursePicUploads uploads = uploads(new LocalFiles() {
+      @Override
+      public StoredPic store(String courseName, String filename, byte[] content) throws IOException {
+        throw new IOException("storage unavailable");
+      }
+    }, 10);
+
+    CoursePicUpload done = awaitDone(uploads, "course1", uploads.submit("course1", picture()).id());
+
+    assertThat(done.status()).isEqualTo(CoursePicUpload.Status.FAILED);
+    assertThat(done.error()).isEqualTo("storage unavailable");
+    verify(courseService, never()).saveCoursePic(any(), any());
+  }
+
+  @Test
+  void submit_shouldDeleteThePicture_whenTheCourseIsGoneBeforeItIsSaved() throws Exception {
+    CoursePicUploads uploads = uploads(localFiles(), 10);
+    when(courseService.saveCoursePic(any(), any())).thenReturn(false);
+
+    CoursePicUpload done = awaitDone(uploads, "course1", uploads.submit("course1", picture()).id());
+
+    assertThat(done.status()).isEqualTo(CoursePicUpload.Status.FAILED);
+    assertThat(storageDir.resolve("course1-pic.png")).doesNotExist();
+  }
+
+  @Test
+  void find_shouldAnswerFromTheSharedJobStore() throws Exception {
+    CoursePicUploads uploads = uploads(localFiles(), 10);
+    UUID jobId = uploads.submit("course1", picture()).id();
+    awaitDone(uploads, "course1", jobId);
+
+    CoursePicUploads peer = new CoursePicUploads(courseService, localFiles(), redis(), new ObjectMapper(), props(10));
+    try {
+      assertThat(peer.find("course1", jobId).status()).isEqualTo(CoursePicUpload.Status.SUCCEEDED);
+    } finally {
+      peer.destroy();
+    }
+  }
+
+  @Test
+  void submit_shouldRefuseUploads_whenTheQueueIsFull() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+    CoursePicUploads uploads = uploads(new LocalFiles() {
+      @Override
+      public StoredPic store(String courseName, String filename, byte[] content) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new StoredPic("url", "asset");
+      }
+    }, 1);
+
+    uploads.submit("course1", picture());
+    started.await();
+    uploads.submit("course1", picture());
+
+    assertThatThrownBy(() -> uploads.submit("course1", picture())).isInstanceOf(UploadQueueFullException.class);
+    release.countDown();
+  }
+
+  @Test
+  void submit_shouldRejectUnknownCourses_beforeQueueing() {
+    CoursePicUploads uploads = uploads(localFiles(), 10);
+    when(courseService.getCourseByNameOrThrow("missing")).thenThrow(new EntityNotFoundException("Course", "missing"));
+
+    assertThatThrownBy(() -> uploads.submit("missing", picture())).isInstanceOf(EntityNotFoundException.class);
+  }
+
+  @Test
+  void find_shouldNotExposeJobsOfAnotherCourse() {
+    CoursePicUploads uploads = uploads(localFiles(), 10);
+
+    UUID jobId = uploads.submit("course1", picture()).id();
+
+    assertThatThrownBy(() -> uploads.find("course2", jobId)).isInstanceOf(EntityNotFoundException.class);
+  }
+}
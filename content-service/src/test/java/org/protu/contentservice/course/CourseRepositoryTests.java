@@ -0,0 +1,75 @@
+package org.protu.contentservice.course;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.config.PostgresContainerConfig;
+import org.protu.contentservice.lesson.dto.LessonWithoutContent;
+import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ActiveProfiles("test")
+@JdbcTest
+@Import({CourseRepository.class, PostgresContainerConfig.class})
+public class CourseRepositoryTests {
+
+  @Autowired
+  CourseRepository courses;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  @BeforeEach
+  void setUp() {
+    jdbcClient.sql("DELETE FROM courses;").update();
+  }
+
+  @Test
+  void lessonCount_shouldFollowLessonLinks() {
+    courses.add(new CourseRequest("course1", "desc1"));
+    int courseId = courses.findByNameOrThrow("course1").id();
+    int lessonId = jdbcClient.sql("INSERT INTO lessons (name, lesson_order) VALUES ('lesson-count-1', 1) RETURNING id")
+        .query(Integer.class)
+        .single();
+
+    courses.addLessonToCourse(courseId, lessonId);
+    courses.addLessonToCourse(courseId, lessonId);
+    assertThat(courses.findByNameOrThrow("course1").lessonCount()).isEqualTo(1);
+
+    courses.deleteLessonFromCourse(courseId, lessonId);
+    courses.deleteLessonFromCourse(courseId, lessonId);
+    assertThat(courses.findByNameOrThrow("course1").lessonCount()).isZero();
+
+    jdbcClient.sql("DELETE FROM lessons WHERE id = :id").param("id", lessonId).update();
+  }
+
+  @Test
+  void positionalMappers_shouldKeepNullableColumnsNull() {
+    courses.add(new CourseRequest("course1", "desc1"));
+    int courseId = courses.findByNameOrThrow("course1").id();
+    int lessonId = jdbcClient.sql("INSERT INTO lessons (name) VALUES ('unordered-lesson') RETURNING id")
+        .query(Integer.class)
+        .single();
+    courses.addLessonToCourse(courseId, lessonId);
+    jdbcClient.sql("INSERT INTO users (id, public_id, roles) VALUES (4242, '01HMAPPERSMAPPERSMAPPERSMA', 'USER')").update();
+
+    assertThat(courses.findByNameOrThrow("course1"))
+        .extracting(CourseDto::name, CourseDto::description, CourseDto::picUrl, CourseDto::lessonCount)
+        .containsExactly("course1", "desc1", null, 1);
+    assertThat(courses.findLessonsByCourseId(courseId))
+        .extracting(LessonWithoutContent::name, LessonWithoutContent::lessonOrder)
+        .containsExactly(tuple("unordered-lesson", null));
+    assertThat(courses.findLessonsWithCompletionStatus(4242L, courseId))
+        .extracting(LessonsWithCompletion::id, LessonsWithCompletion::isCompleted)
+        .containsExactly(tuple(lessonId, null));
+
+    jdbcClient.sql("DELETE FROM users WHERE id = 4242").update();
+    jdbcClient.sql("DELETE FROM lessons WHERE id = :id").param("id", lessonId).update();
+  }
+}
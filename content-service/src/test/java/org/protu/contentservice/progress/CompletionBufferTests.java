@@ -0,0 +1,147 @@
+package org.protu.contentservice.progress;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.protu.contentservice.common.datasource.RecentWriters;
+import org.protu.contentservice.common.properties.AppProperties;
+import org.protu.contentservice.lesson.dto.LessonsWithCompletion;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CompletionBufferTests {
+
+  private final ProgressRepository progressRepo = mock(ProgressRepository.class);
+  private final Cache lessonsWithCompletion = mock(Cache.class);
+  private final RecentWriters recentWriters = spy(new RecentWriters(Duration.ofMinutes(1)));
+  private CompletionBuffer buffer;
+
+  private static AppProperties props(int capacity) {
+    AppProperties props = mock(AppProperties.class);
+    when(props.progress()).thenReturn(new AppProperties.Progress(
+        new AppProperties.Progress.WriteBehind(true, capacity, 100, Duration.ofHours(1))));
+    return props;
+  }
+
+  private ObjectProvider<RecentWriters> writers() {
+    StaticListableBeanFactory beans = new StaticListableBeanFactory();
+    beans.addBean("recentWriters", recentWriters);
+    return beans.getBeanProvider(RecentWriters.class);
+  }
+
+  @BeforeEach
+  void setUp() {
+    CacheManager cacheManager = mock(CacheManager.class);
+    when(cacheManager.getCache("course-lessons-with-completion")).thenReturn(lessonsWithCompletion);
+
+    buffer = new CompletionBuffer(progressRepo, mock(PlatformTransactionManager.class), cacheManager, writers(), props(2));
+  }
+
+  @AfterEach
+  void tearDown() {
+    buffer.destroy();
+  }
+
+  @Test
+  void offer_shouldKeepLatestStatePerUserAndLesson() {
+    assertThat(buffer.offer(new PendingCompletion(1L, 10, "course1", 100, true))).isTrue();
+    assertThat(buffer.offer(new PendingCompletion(1L, 10, "course1", 100, false))).isTrue();
+
+    assertThat(buffer.pending(1L, 10))
+        .extracting(PendingCompletion::completed)
+        .containsExactly(false);
+  }
+
+  @Test
+  void offer_shouldRefuseNewKeys_whenFull() {
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 100, true));
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 101, true));
+
+    assertThat(buffer.offer(new PendingCompletion(1L, 10, "course1", 102, true))).isFalse();
+    assertThat(buffer.offer(new PendingCompletion(1L, 10, "course1", 101, false))).isTrue();
+  }
+
+  @Test
+  void merge_shouldOverlayUnflushedState() {
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 100, true));
+
+    List<LessonsWithCompletion> merged = buffer.merge(1L, List.of(
+        new LessonsWithCompletion(100, "lesson1", 1, false),
+        new LessonsWithCompletion(101, "lesson2", 2, false)));
+
+    assertThat(merged)
+        .extracting(LessonsWithCompletion::isCompleted)
+        .containsExactly(true, false);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void flush_shouldApplyBatchAndDropFlushedEntries() {
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 100, true));
+    buffer.offer(new PendingCompletion(2L, 10, "course1", 100, true));
+
+    buffer.flush();
+
+    ArgumentCaptor<Collection<PendingCompletion>> batch = ArgumentCaptor.forClass(Collection.class);
+    verify(progressRepo).applyCompletions(batch.capture());
+    assertThat(batch.getValue()).hasSize(2);
+    assertThat(buffer.pending(1L, 10)).isEmpty();
+    verify(lessonsWithCompletion).evict(List.of(1L, "course1"));
+    verify(recentWriters).markWrote(1L);
+    verify(recentWriters).markWrote(2L);
+  }
+
+  @Test
+  void flush_shouldKeepEntries_whenBatchFails() {
+    doThrow(new QueryTimeoutException("timeout")).when(progressRepo).applyCompletions(any());
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 100, true));
+
+    buffer.flush();
+
+    assertThat(buffer.pending(1L, 10)).hasSize(1);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void flush_shouldDropOnlyRejectedEntries() {
+    doAnswer(invocation -> {
+      Collection<PendingCompletion> batch = invocation.getArgument(0);
+      if (batch.stream().anyMatch(completion -> completion.lessonId() == 666)) {
+        throw new DataIntegrityViolationException("lesson is gone");
+      }
+      return null;
+    }).when(progressRepo).applyCompletions(any());
+    buffer.destroy();
+    buffer = new CompletionBuffer(progressRepo, mock(PlatformTransactionManager.class), mock(CacheManager.class), writers(), props(3));
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 100, true));
+    buffer.offer(new PendingCompletion(1L, 10, "course1", 666, true));
+    buffer.offer(new PendingCompletion(2L, 10, "course1", 100, true));
+
+    buffer.flush();
+
+    assertThat(buffer.pending(1L)).isEmpty();
+    assertThat(buffer.pending(2L)).isEmpty();
+    ArgumentCaptor<Collection<PendingCompletion>> batches = ArgumentCaptor.forClass(Collection.class);
+    verify(progressRepo, atLeast(3)).applyCompletions(batches.capture());
+    assertThat(batches.getAllValues())
+        .filteredOn(batch -> batch.stream().noneMatch(completion -> completion.lessonId() == 666))
+        .flatExtracting(batch -> List.copyOf(batch))
+        .extracting(PendingCompletion::userId, PendingCompletion::lessonId)
+        .containsExactlyInAnyOrder(tuple(1L, 100), tuple(2L, 100));
+  }
+}
@@ -0,0 +1,129 @@
+package org.protu.contentservice.progress;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.config.PostgresContainerConfig;
+import org.protu.contentservice.course.CourseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@JdbcTest
+@Import({ProgressRepository.class, CourseRepository.class, PostgresContainerConfig.class})
+public class ProgressRepositoryTests {
+
+  private static final long USER_ID = 1L;
+
+  @Autowired
+  ProgressRepository progress;
+
+  @Autowired
+  CourseRepository courses;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  private int courseId;
+  private int lesson1;
+  private int lesson2;
+
+  @BeforeEach
+  void setUp() {
+    jdbcClient.sql("DELETE FROM users;").update();
+    jdbcClient.sql("DELETE FROM tracks;").update();
+    jdbcClient.sql("DELETE FROM courses;").update();
+    jdbcClient.sql("DELETE FROM lessons;").update();
+
+    jdbcClient.sql("INSERT INTO users (id, public_id, roles) VALUES (:id, '01HZZZZZZZZZZZZZZZZZZZZZZZ', 'USER')")
+        .param("id", USER_ID)
+        .update();
+    courseId = insert("INSERT INTO courses (name, description) VALUES ('course1', 'desc') RETURNING id");
+    lesson1 = insert("INSERT INTO lessons (name, lesson_order) VALUES ('lesson1', 1) RETURNING id");
+    lesson2 = insert("INSERT INTO lessons (name, lesson_order) VALUES ('lesson2', 2) RETURNING id");
+    courses.addLessonToCourse(courseId, lesson1);
+    courses.addLessonToCourse(courseId, lesson2);
+  }
+
+  private int insert(String sql) {
+    return jdbcClient.sql(sql).query(Integer.class).single();
+  }
+
+  @Test
+  void completeLesson_shouldReportNotEnrolled_withoutChangingAnything() {
+    LessonCompletion completion = progress.completeLesson(USER_ID, courseId, lesson1);
+
+    assertThat(completion.userExists()).isTrue();
+    assertThat(completion.enrolled()).isFalse();
+    assertThat(completion.changed()).isFalse();
+  }
+
+  @Test
+  void completeLesson_shouldCountOnce_andUncompleteShouldRelease() {
+    progress.addCourseForUser(USER_ID, courseId);
+
+    assertThat(progress.completeLesson(USER_ID, courseId, lesson1))
+        .extracting(LessonCompletion::changed, LessonCompletion::completedLessons, LessonCompletion::totalLessons)
+        .containsExactly(true, 1, 2);
+    assertThat(progress.completeLesson(USER_ID, courseId, lesson1).changed()).isFalse();
+
+    assertThat(progress.uncompleteLesson(USER_ID, courseId, lesson1))
+        .extracting(LessonCompletion::changed, LessonCompletion::completedLessons)
+        .containsExactly(true, 0);
+    assertThat(progress.uncompleteLesson(USER_ID, courseId, lesson2).changed()).isFalse();
+  }
+
+  @Test
+  void bulkApplyCompletions_shouldApplyAllEntries_inOneStatement() {
+    progress.addCourseForUser(USER_ID, courseId);
+    progress.completeLesson(USER_ID, courseId, lesson2);
+
+    List<BulkCompletionRow> rows = progress.bulkApplyCompletions(USER_ID, List.of(
+        new PendingCompletion(USER_ID, courseId, "course1", lesson1, true),
+        new PendingCompletion(USER_ID, courseId, "course1", lesson2, true)));
+
+    assertThat(rows).extracting(BulkCompletionRow::changed).containsExactly(true, false);
+    assertThat(rows).extracting(BulkCompletionRow::completedLessons).containsOnly(2);
+    assertThat(progress.getTotalNumberOfCompletedLessonsInCourse(USER_ID, courseId)).isEqualTo(2);
+  }
+
+  @Test
+  void bulkApplyCompletions_shouldKeepEntries_whoseCourseWasDeleted() {
+    progress.addCourseForUser(USER_ID, courseId);
+
+    List<BulkCompletionRow> rows = progress.bulkApplyCompletions(USER_ID, List.of(
+        new PendingCompletion(USER_ID, courseId + 1000, "gone", lesson1, true),
+        new PendingCompletion(USER_ID, courseId, "course1", lesson2, true)));
+
+    assertThat(rows).extracting(BulkCompletionRow::ord).containsExactly(1, 2);
+    assertThat(rows).extracting(BulkCompletionRow::courseExists).containsExactly(false, true);
+    assertThat(rows).extracting(BulkCompletionRow::changed).containsExactly(false, true);
+  }
+
+  @Test
+  void findDashboard_shouldAggregateEnrolledCoursesPerTrack() {
+    int otherCourse = insert("INSERT INTO courses (name, description) VALUES ('course2', 'desc') RETURNING id");
+    courses.addLessonToCourse(otherCourse, lesson1);
+    int trackId = insert("INSERT INTO tracks (name, description) VALUES ('track1', 'desc') RETURNING id");
+    jdbcClient.sql("INSERT INTO tracks_courses (track_id, course_id) VALUES (:trackId, :courseId), (:trackId, :otherCourse)")
+        .param("trackId", trackId)
+        .param("courseId", courseId)
+        .param("otherCourse", otherCourse)
+        .update();
+    progress.addCourseForUser(USER_ID, courseId);
+    progress.completeLesson(USER_ID, courseId, lesson1);
+
+    ProgressDashboard dashboard = progress.findDashboard(USER_ID);
+
+    assertThat(dashboard.courses())
+        .containsExactly(new CourseProgress(courseId, "course1", 1, 2));
+    assertThat(dashboard.tracks())
+        .containsExactly(new TrackProgress(trackId, "track1", List.of(courseId), 2, 1, 3));
+  }
+}
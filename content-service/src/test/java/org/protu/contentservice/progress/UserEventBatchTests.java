@@ -0,0 +1,67 @@
+package org.protu.contentservice.progress;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserEventBatchTests {
+
+  private static UserData user(long id, String roles) {
+    return new UserData(id, "public-" + id, roles);
+  }
+
+  private static Timestamp at(long millis) {
+    return new Timestamp(millis);
+  }
+
+  @Test
+  void shouldFoldEachUsersEventsInOrder() {
+    UserEventBatch batch = new UserEventBatch();
+
+    batch.created(user(1, "USER"), at(1));
+    batch.updated(user(1, "ADMIN"), at(2));
+    batch.updated(user(2, "ADMIN"), at(3));
+    batch.created(user(3, "USER"), at(4));
+    batch.deleted(user(3, "USER"), at(5));
+
+    assertThat(batch.upserts()).containsExactly(new UserEvent(user(1, "ADMIN"), at(2)));
+    assertThat(batch.roleUpdates()).containsExactly(new UserEvent(user(2, "ADMIN"), at(3)));
+    assertThat(batch.deletions()).extracting(event -> event.user().id()).containsExactly(3L);
+  }
+
+  @Test
+  void shouldDeleteBeforeRecreating_whenUserIsDeletedAndCreatedAgain() {
+    UserEventBatch batch = new UserEventBatch();
+
+    batch.deleted(user(1, "USER"), at(1));
+    batch.created(user(1, "USER"), at(2));
+
+    assertThat(batch.deletions()).extracting(event -> event.user().id()).containsExactly(1L);
+    assertThat(batch.upserts()).containsExactly(new UserEvent(user(1, "USER"), at(2)));
+  }
+
+  @Test
+  void shouldIgnoreRoleUpdates_afterDeletion() {
+    UserEventBatch batch = new UserEventBatch();
+
+    batch.deleted(user(1, "USER"), at(1));
+    batch.updated(user(1, "ADMIN"), at(2));
+
+    assertThat(batch.deletions()).extracting(event -> event.user().id()).containsExactly(1L);
+    assertThat(batch.roleUpdates()).isEmpty();
+  }
+
+  @Test
+  void shouldSkipEventsOlderThanOneAlreadyFolded() {
+    UserEventBatch batch = new UserEventBatch();
+
+    batch.updated(user(1, "ADMIN"), at(5));
+    batch.updated(user(1, "USER"), at(3));
+    batch.deleted(user(1, "USER"), at(4));
+
+    assertThat(batch.roleUpdates()).containsExactly(new UserEvent(user(1, "ADMIN"), at(5)));
+    assertThat(batch.deletions()).isEmpty();
+  }
+}
@@ -0,0 +1,107 @@
+package org.protu.contentservice.progress;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.config.PostgresContainerConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@ActiveProfiles("test")
+@JdbcTest
+@Import(PostgresContainerConfig.class)
+public class UserReplicaServiceTests {
+
+  private static final String SNAPSHOT = """
+      {"id":1,"publicId":"01HZZZZZZZZZZZZZZZZZZZZZZ1","roles":"USER"}
+      {"id":2,"publicId":"01HZZZZZZZZZZZZZZZZZZZZZZ2","roles":"USER"}
+      """;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  @Autowired
+  DataSource dataSource;
+
+  private UserReplicaService replica;
+
+  @BeforeEach
+  void setUp() {
+    jdbcClient.sql("DELETE FROM users;").update();
+    jdbcClient.sql("DELETE FROM deleted_users;").update();
+    replica = new UserReplicaService(jdbcClient, dataSource, new ObjectMapper(), mock(EntityVersions.class));
+  }
+
+  private static InputStream snapshot() {
+    return new ByteArrayInputStream(SNAPSHOT.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private boolean exists(long id) {
+    return jdbcClient.sql("SELECT EXISTS (SELECT 1 FROM users WHERE id = :id)")
+        .param("id", id)
+        .query(Boolean.class)
+        .single();
+  }
+
+  @Test
+  void importSnapshot_shouldNotRestoreUsers_deletedAfterSnapshotPoint() {
+    Instant snapshotAt = Instant.parse("2025-01-01T00:00:00Z");
+    replica.addUser(new UserData(2L, "01HZZZZZZZZZZZZZZZZZZZZZZ2", "USER"), Timestamp.from(snapshotAt.minusSeconds(60)));
+    replica.deleteUser(2L, Timestamp.from(snapshotAt.plusSeconds(1)));
+
+    UserSnapshotImport result = replica.importSnapshot(snapshot(), snapshotAt);
+
+    assertThat(exists(1L)).isTrue();
+    assertThat(exists(2L)).isFalse();
+    assertThat(result.importedUsers()).isEqualTo(1);
+  }
+
+  @Test
+  void importSnapshot_shouldRestoreUsers_andDropTombstones_olderThanSnapshotPoint() {
+    Instant snapshotAt = Instant.parse("2025-01-01T00:00:00Z");
+    replica.deleteUser(2L, Timestamp.from(snapshotAt.minusSeconds(1)));
+
+    replica.importSnapshot(snapshot(), snapshotAt);
+
+    assertThat(exists(2L)).isTrue();
+    assertThat(jdbcClient.sql("SELECT COUNT(*) FROM deleted_users").query(Integer.class).single()).isZero();
+  }
+
+  @Test
+  void addUser_shouldNotRestoreUser_whenCreateArrivesAfterLaterDelete() {
+    Instant deletedAt = Instant.parse("2025-01-01T00:00:00Z");
+    replica.deleteUser(3L, Timestamp.from(deletedAt));
+
+    replica.addUser(new UserData(3L, "01HZZZZZZZZZZZZZZZZZZZZZZ3", "USER"), Timestamp.from(deletedAt.minusSeconds(1)));
+
+    assertThat(exists(3L)).isFalse();
+  }
+
+  @Test
+  void applyBatch_shouldNotRestoreUsers_whenCreateArrivesAfterLaterDelete() {
+    Instant deletedAt = Instant.parse("2025-01-01T00:00:00Z");
+    replica.deleteUser(3L, Timestamp.from(deletedAt));
+
+    replica.applyBatch(List.of(), List.of(
+        new UserEvent(new UserData(3L, "01HZZZZZZZZZZZZZZZZZZZZZZ3", "USER"), Timestamp.from(deletedAt.minusSeconds(1))),
+        new UserEvent(new UserData(4L, "01HZZZZZZZZZZZZZZZZZZZZZZ4", "USER"), Timestamp.from(deletedAt))), List.of());
+
+    assertThat(exists(3L)).isFalse();
+    assertThat(exists(4L)).isTrue();
+  }
+}
@@ -0,0 +1,29 @@
+package org.protu.contentservice.progress;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UserSnapshotCopyTests {
+
+  private static String field(String value) {
+    StringBuilder row = new StringBuilder();
+    UserSnapshotCopy.appendField(row, value);
+    return row.toString();
+  }
+
+  @Test
+  void appendField_shouldKeepPlainValues() {
+    assertThat(field("ROLE_USER,ROLE_ADMIN")).isEqualTo("ROLE_USER,ROLE_ADMIN");
+  }
+
+  @Test
+  void appendField_shouldEscapeCopyDelimiters() {
+    assertThat(field("a\tb\nc\rd\\e")).isEqualTo("a\\tb\\nc\\rd\\\\e");
+  }
+
+  @Test
+  void appendField_shouldWriteNullMarker() {
+    assertThat(field(null)).isEqualTo("\\N");
+  }
+}
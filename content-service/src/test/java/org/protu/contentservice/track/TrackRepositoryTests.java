@@ -2,6 +2,9 @@ package org.protu.contentservice.track;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.protu.contentservice.common.etag.EntityVersions;
+import org.protu.contentservice.common.index.EntityIdIndex;
+import org.protu.contentservice.common.pagination.PageQuery;
 import org.protu.contentservice.config.PostgresContainerConfig;
 import org.protu.contentservice.course.CourseRepository;
 import org.protu.contentservice.course.CourseRequest;
@@ -10,14 +13,21 @@ import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @ActiveProfiles("test")
 @JdbcTest
-@Import({CourseRepository.class, TrackRepository.class, PostgresContainerConfig.class})
+@Import({CourseRepository.class, TrackRepository.class, EntityIdIndex.class, PostgresContainerConfig.class})
 public class TrackRepositoryTests {
 
+  @MockitoBean
+  EntityVersions versions;
+
   @Autowired
   TrackRepository tracks;
 
@@ -183,4 +193,62 @@ public class TrackRepositoryTests {
         .extracting("name")
         .containsExactlyInAnyOrder("course1", "course2");
   }
+
+  @Test
+  void findPage_shouldWalkTracksByName_withPrefixFilter() {
+    tracks.add(new TrackRequest("web3", "desc"));
+    tracks.add(new TrackRequest("web1", "desc"));
+    tracks.add(new TrackRequest("mobile", "desc"));
+    tracks.add(new TrackRequest("web2", "desc"));
+
+    var first = tracks.findPage(PageQuery.of("name", "web", null, 2));
+    var second = tracks.findPage(PageQuery.of("name", "web", first.nextCursor(), 2));
+
+    assertThat(first.items()).extracting(TrackWithCourses::name).containsExactly("web1", "web2");
+    assertThat(first.nextCursor()).isNotNull();
+    assertThat(second.items()).extracting(TrackWithCourses::name).containsExactly("web3");
+    assertThat(second.nextCursor()).isNull();
+  }
+
+  @Test
+  void findPage_shouldTreatLikeWildcardsInPrefixLiterally() {
+    tracks.add(new TrackRequest("web_a", "desc"));
+    tracks.add(new TrackRequest("webxa", "desc"));
+
+    var page = tracks.findPage(PageQuery.of("id", "web_", null, 10));
+
+    assertThat(page.items()).extracting(TrackWithCourses::name).containsExactly("web_a");
+  }
+
+  @Test
+  void streamAll_shouldContinueAcrossChunks() {
+    for (int i = 0; i < 250; i++) {
+      tracks.add(new TrackRequest("track" + i, "desc"));
+    }
+
+    List<TrackWithCourses> streamed = new ArrayList<>();
+    tracks.streamAll(streamed::add);
+
+    assertThat(streamed).hasSize(250);
+    assertThat(streamed).extracting(TrackWithCourses::id).isSorted().doesNotHaveDuplicates();
+  }
+
+  @Test
+  void streamAll_shouldEmitEachTrackWithItsCourses() {
+    tracks.add(new TrackRequest("track1", "desc1"));
+    tracks.add(new TrackRequest("track2", "desc2"));
+    courses.add(new CourseRequest("course1", "desc1"));
+    courses.add(new CourseRequest("course2", "desc2"));
+    tracks.addCourseToTrack("track1", "course1");
+    tracks.addCourseToTrack("track1", "course2");
+
+    List<TrackWithCourses> streamed = new ArrayList<>();
+    tracks.streamAll(streamed::add);
+
+    assertThat(streamed)
+        .extracting(TrackWithCourses::name)
+        .containsExactly("track1", "track2");
+    assertThat(streamed.getFirst().courses()).hasSize(2);
+    assertThat(streamed.getLast().courses()).isEmpty();
+  }
 }
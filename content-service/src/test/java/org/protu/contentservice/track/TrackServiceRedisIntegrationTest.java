@@ -60,7 +60,7 @@ public class TrackServiceRedisIntegrationTest {
   }
 
   private List<CourseDto> createTestCourseList() {
-    return List.of(new CourseDto(1, "any", "any", "any"));
+    return List.of(new CourseDto(1, "any", "any", "any", 0));
   }
 
   private TrackRequest createTestTrackRequest() {
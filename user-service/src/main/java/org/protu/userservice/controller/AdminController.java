@@ -9,11 +9,15 @@ import org.protu.userservice.dto.ApiResponse;
 import org.protu.userservice.dto.request.UserRolesRequestDto;
 import org.protu.userservice.dto.response.DeactivateResDto;
 import org.protu.userservice.dto.response.UserDetailsForAdminDto;
+import org.protu.userservice.dto.response.UserSnapshotResDto;
 import org.protu.userservice.service.AdminService;
 import org.protu.userservice.service.JWTService;
+import org.protu.userservice.service.UserSnapshotService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.protu.userservice.helper.SuccessResponseHelper.buildResponse;
 
@@ -22,7 +26,10 @@ import static org.protu.userservice.helper.SuccessResponseHelper.buildResponse;
 @RequiredArgsConstructor
 public class AdminController {
 
+  public static final String SNAPSHOT_AT_HEADER = "X-Snapshot-At";
+
   private final AdminService adminService;
+  private final UserSnapshotService userSnapshotService;
   private final JWTService jwtService;
   private final AppProperties properties;
 
@@ -80,4 +87,16 @@ public class AdminController {
     adminService.deleteUser(userId, token);
     return new ResponseEntity<>(HttpStatus.NO_CONTENT);
   }
+
+  @GetMapping(value = "/users/snapshot", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportUserSnapshot(
+      @RequestHeader("Authorization") String authHeader) {
+
+    String token = jwtService.getTokenFromHeader(authHeader);
+    UserSnapshotResDto snapshot = userSnapshotService.exportReplicaSnapshot(token);
+    return ResponseEntity.ok()
+        .header(SNAPSHOT_AT_HEADER, snapshot.snapshotAt().toString())
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(snapshot.body());
+  }
 }
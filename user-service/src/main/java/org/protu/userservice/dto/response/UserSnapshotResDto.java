@@ -0,0 +1,7 @@
+package org.protu.userservice.dto.response;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+
+public record UserSnapshotResDto(Instant snapshotAt, StreamingResponseBody body) {}
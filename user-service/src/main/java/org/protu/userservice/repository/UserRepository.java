@@ -1,10 +1,18 @@
 package org.protu.userservice.repository;
 
+import jakarta.persistence.QueryHint;
+import org.protu.userservice.dto.rabbitmq.UserData;
 import org.protu.userservice.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -13,4 +21,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByEmail(String email);
 
   Optional<User> findByPublicId(String publicId);
+
+  // projected straight into the replica shape and read through a server-side cursor, so neither
+  // entities nor the whole table are ever held in memory; must be consumed inside a transaction
+  @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+  @Query("SELECT new org.protu.userservice.dto.rabbitmq.UserData(u.id, u.publicId, u.roles) FROM User u ORDER BY u.id")
+  Stream<UserData> streamReplicaSnapshot();
 }
@@ -0,0 +1,82 @@
+package org.protu.userservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.protu.userservice.dto.rabbitmq.UserData;
+import org.protu.userservice.dto.response.UserSnapshotResDto;
+import org.protu.userservice.helper.UserHelper;
+import org.protu.userservice.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Exports the replica view of every user, {@code (id, publicId, roles)}, as newline-delimited JSON
+ * so consumers can rebuild their replicas without replaying the user-events stream.
+ * <p>
+ * The rows are read in one repeatable-read transaction that starts after {@code snapshotAt}, so the
+ * export reflects every event published before that instant; consumers resume the event stream
+ * from it.
+ */
+@Service
+public class UserSnapshotService {
+
+  private final UserHelper userHelper;
+  private final UserRepository userRepo;
+  private final ObjectMapper objectMapper;
+  private final ObjectWriter rowWriter;
+  private final TransactionTemplate snapshotTransaction;
+
+  public UserSnapshotService(
+      UserHelper userHelper,
+      UserRepository userRepo,
+      ObjectMapper objectMapper,
+      PlatformTransactionManager transactionManager) {
+
+    this.userHelper = userHelper;
+    this.userRepo = userRepo;
+    this.objectMapper = objectMapper;
+    // rows leave through the generator's buffer; flushing after each one would cost a write per user
+    this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.snapshotTransaction = new TransactionTemplate(transactionManager);
+    snapshotTransaction.setReadOnly(true);
+    snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+  }
+
+  public UserSnapshotResDto exportReplicaSnapshot(String token) {
+    userHelper.checkIfUserIsAdminOrThrow(token);
+    Instant snapshotAt = Instant.now();
+    return new UserSnapshotResDto(snapshotAt, this::writeReplicaSnapshot);
+  }
+
+  private void writeReplicaSnapshot(OutputStream out) throws IOException {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      // lines end with the newline written after each value; Jackson's default root separator is a space
+      generator.setRootValueSeparator(null);
+      snapshotTransaction.executeWithoutResult(status -> {
+        try (Stream<UserData> users = userRepo.streamReplicaSnapshot()) {
+          users.forEach(user -> write(generator, user));
+        }
+      });
+    }
+  }
+
+  private void write(JsonGenerator generator, UserData user) {
+    try {
+      rowWriter.writeValue(generator, user);
+      generator.writeRaw('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}